@@ -0,0 +1,39 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/** Fixtures shared by the suites: incompressible input files and a sink that reads streams the way HttpClient does. */
+final class BenchData {
+
+    private BenchData() {}
+
+    /** Random bytes (stand-in for an already-compressed PNG/JPEG), deleted on exit. */
+    static Path randomFile(int bytes, long seed) throws IOException {
+        Path p = Files.createTempFile("kontext4j-bench-", ".png");
+        p.toFile().deleteOnExit();
+        byte[] data = new byte[bytes];
+        new Random(seed).nextBytes(data);
+        Files.write(p, data);
+        return p;
+    }
+
+    /** Read the stream to the end in 16 KB chunks (the publisher's buffer size); returns the byte count. */
+    static long drain(InputStream in) throws IOException {
+        byte[] buf = new byte[16 * 1024];
+        long total = 0;
+        try (in) {
+            int n;
+            while ((n = in.read(buf)) > 0) total += n;
+        }
+        return total;
+    }
+
+    /** A client that is initialised but never talks to the network. */
+    static Kontext4J offlineClient() {
+        return new Kontext4J().init("bench-key");
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.initio.kontext4j;
+
+import java.util.Arrays;
+
+/**
+ * Entry point of {@code benchmarks.jar}: the stock JMH launcher with {@code -prof gc} switched on unless
+ * another profiler is requested, so every run reports allocation rate next to the timings.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws Exception {
+        if (!Arrays.asList(args).contains("-prof")) {
+            String[] withGc = Arrays.copyOf(args, args.length + 2);
+            withGc[args.length] = "-prof";
+            withGc[args.length + 1] = "gc";
+            args = withGc;
+        }
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.initio.kontext4j;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input encoding: what {@code tryEncodeInput} hands to the request body for a local file, drained exactly as the
+ * HTTP publisher would, against the read-everything-then-encode baseline it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class EncodeBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int sizeMb;
+
+    private Kontext4J client;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        client = BenchData.offlineClient();
+        file = BenchData.randomFile(sizeMb * 1024 * 1024, sizeMb);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /** Resolve the input and stream its base64 form; nothing larger than one chunk is held. */
+    @Benchmark
+    public long streamed() throws IOException {
+        ImageSource source = ImageSource.resolve(file.toString());
+        return BenchData.drain(source.openBase64(client));
+    }
+
+    /** Whole file on heap, then a second, 4/3 larger copy as a String. */
+    @Benchmark
+    public int eager() throws IOException {
+        return Base64.getEncoder().encodeToString(Files.readAllBytes(file)).length();
+    }
+}
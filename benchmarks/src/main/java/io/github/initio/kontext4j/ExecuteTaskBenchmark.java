@@ -0,0 +1,127 @@
+package io.github.initio.kontext4j;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end task execution (create, poll until Ready, extract) against an in-process stub of the BFL API whose
+ * tasks become Ready {@code readyAfterMs} after creation. With a zero delay this is pure client overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// without TCP_NODELAY the stub's small responses sit in Nagle/delayed-ACK for ~40 ms each
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class ExecuteTaskBenchmark {
+
+    private static final long POLL_INTERVAL_MS = 10;
+
+    @Param({"0", "50", "250"})
+    public long readyAfterMs;
+
+    private HttpServer server;
+    private ExecutorService serverPool;
+    private PollScheduler scheduler;
+    private Kontext4J client;
+    private KontextRequest request;
+
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<String, Long> createdAt = new ConcurrentHashMap<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        serverPool = Executors.newFixedThreadPool(8);
+        server.setExecutor(serverPool);
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        server.createContext("/v1/bench", ex -> create(ex, base));
+        server.createContext("/v1/get_result", this::result);
+        server.start();
+
+        scheduler = new PollScheduler(64, 0.0);
+        client = new Kontext4J().init("bench-key")
+                .setPollPolicy(PollPolicy.fixed(POLL_INTERVAL_MS))
+                .setPollScheduler(scheduler);
+        request = GenerateRequest.builder()
+                .endpoint(base + "/v1/bench")
+                .prompt("A tiny robot sipping coffee").aspectRatio("16:9").outputFormat("png").numOutputs(1)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.close();
+        server.stop(0);
+        serverPool.shutdownNow();
+    }
+
+    @Benchmark
+    public KontextResult single() {
+        return client.submit(request).join();
+    }
+
+    /** 100 tasks in flight at once, all on the shared scheduler. */
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public int concurrent100() {
+        List<CompletableFuture<KontextResult>> futures = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) futures.add(client.submit(request));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        return futures.size();
+    }
+
+    // ----------------------
+    // Stub server
+    // ----------------------
+    private void create(HttpExchange ex, String base) throws IOException {
+        BenchData.drain(ex.getRequestBody());
+        String id = Long.toString(ids.incrementAndGet());
+        createdAt.put(id, System.currentTimeMillis());
+        respond(ex, new JSONObject().put("id", id).put("polling_url", base + "/v1/get_result?id=" + id));
+    }
+
+    private void result(HttpExchange ex) throws IOException {
+        String query = ex.getRequestURI().getQuery();
+        String id = query == null ? "" : query.substring(query.indexOf('=') + 1);
+        Long created = createdAt.get(id);
+        JSONObject json = new JSONObject().put("id", id);
+        if (created == null) {
+            json.put("status", "Task not found");
+        } else if (System.currentTimeMillis() - created < readyAfterMs) {
+            json.put("status", "Pending");
+        } else {
+            createdAt.remove(id);
+            json.put("status", "Ready").put("result", new JSONObject()
+                    .put("prompt", "A tiny robot sipping coffee")
+                    .put("sample", "https://delivery.example.com/results/" + id + "/sample.png"));
+        }
+        respond(ex, json);
+    }
+
+    private static void respond(HttpExchange ex, JSONObject json) throws IOException {
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
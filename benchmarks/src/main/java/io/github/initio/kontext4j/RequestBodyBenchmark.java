@@ -0,0 +1,108 @@
+package io.github.initio.kontext4j;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request body construction and serialization: the four-image {@code edit} body streamed from disk versus the same
+ * body as a {@link JSONObject} with inline base64, plus a text-only {@code generate} body both ways and built
+ * from a {@link KontextTemplate} (fixed fields serialized once).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class RequestBodyBenchmark {
+
+    private static final String PROMPT = "Turn the four photos into a single watercolor postcard, keep the faces";
+
+    @Param({"1", "10"})
+    public int imageMb;
+
+    private Kontext4J client;
+    private KontextTemplate template;
+    private final Path[] images = new Path[4];
+    private final String[] inlined = new String[4];
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        client = BenchData.offlineClient();
+        template = GenerateRequest.builder()
+                .aspectRatio("16:9").steps(28).guidance(3.5).safetyTolerance(2).outputFormat("png").numOutputs(1)
+                .toTemplate();
+        for (int i = 0; i < images.length; i++) {
+            images[i] = BenchData.randomFile(imageMb * 1024 * 1024, i);
+            inlined[i] = Base64.getEncoder().encodeToString(Files.readAllBytes(images[i]));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (Path p : images) Files.deleteIfExists(p);
+    }
+
+    /** Edit body with four local files, then the full body as the publisher sends it. */
+    @Benchmark
+    public long editStreamed() throws Exception {
+        RequestBody body = EditRequest.builder()
+                .image(images[0].toString()).image(images[1].toString())
+                .image(images[2].toString()).image(images[3].toString())
+                .prompt(PROMPT).aspectRatio("1:1").seed(42).outputFormat("png").numOutputs(1)
+                .build().body(client);
+        return BenchData.drain(body.open(client));
+    }
+
+    /** Serialization cost alone of the pre-streaming body: images already encoded, JSONObject.toString. */
+    @Benchmark
+    public int editJsonObject() {
+        JSONObject body = new JSONObject();
+        body.put("prompt", PROMPT);
+        body.put("aspect_ratio", "1:1");
+        body.put("seed", 42);
+        body.put("output_format", "png");
+        body.put("num_outputs", 1);
+        body.put("input_image", inlined[0]);
+        body.put("input_image_2", inlined[1]);
+        body.put("input_image_3", inlined[2]);
+        body.put("input_image_4", inlined[3]);
+        return body.toString().length();
+    }
+
+    @Benchmark
+    public long generateStreamed() throws Exception {
+        RequestBody body = GenerateRequest.builder()
+                .prompt(PROMPT).aspectRatio("16:9").seed(7).steps(28).guidance(3.5).safetyTolerance(2)
+                .outputFormat("png").numOutputs(1)
+                .build().body(client);
+        return BenchData.drain(body.open(client));
+    }
+
+    /** Same body from a template: only prompt and seed are serialized per call. */
+    @Benchmark
+    public long generateTemplated() throws Exception {
+        RequestBody body = GenerateRequest.builder(template).prompt(PROMPT).seed(7).build().body(client);
+        return BenchData.drain(body.open(client));
+    }
+
+    @Benchmark
+    public int generateJsonObject() {
+        JSONObject body = new JSONObject();
+        body.put("prompt", PROMPT);
+        body.put("aspect_ratio", "16:9");
+        body.put("seed", 7);
+        body.put("steps", 28);
+        body.put("guidance", 3.5);
+        body.put("safety_tolerance", 2);
+        body.put("output_format", "png");
+        body.put("num_outputs", 1);
+        return body.toString().length();
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.initio.kontext4j;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result extraction on a final poll response carrying {@code outputs} URLs in both {@code result.samples} and
+ * {@code result.outputs}: the streaming {@link TaskResponse} scan of the raw bytes as the poller sees them, versus
+ * the previous path (response text to {@link JSONObject}, then walking it), and a plain Pending poll both ways.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultExtractionBenchmark {
+
+    @Param({"1", "16", "1000"})
+    public int outputs;
+
+    private byte[] raw;
+    private byte[] pending;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        JSONArray samples = new JSONArray();
+        JSONArray objects = new JSONArray();
+        for (int i = 0; i < outputs; i++) {
+            String url = "https://delivery-eu1.bfl.ai/results/3f0c6a1e-9d2b-4c44-b1a7-" + String.format("%012d", i)
+                    + "/sample.png?se=2026-10-16T12%3A00%3A00Z&sp=r&sv=2024-11-04&sr=b&sig=" + "x".repeat(43);
+            samples.put(url);
+            objects.put(new JSONObject().put("url", url).put("seed", i).put("width", 1024).put("height", 1024));
+        }
+        JSONObject result = new JSONObject()
+                .put("prompt", "A tiny robot sipping coffee")
+                .put("seed", 42)
+                .put("samples", samples)
+                .put("outputs", objects);
+        raw = new JSONObject()
+                .put("id", "3f0c6a1e-9d2b-4c44-b1a7-5e0b7d2a91c4")
+                .put("status", "Ready")
+                .put("result", result)
+                .put("progress", JSONObject.NULL)
+                .toString().getBytes(StandardCharsets.UTF_8);
+        pending = "{\"id\":\"3f0c6a1e-9d2b-4c44-b1a7-5e0b7d2a91c4\",\"status\":\"Pending\",\"result\":null,\"progress\":0.4}"
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<String> streamed() throws Exception {
+        return TaskResponse.parse(raw).urls();
+    }
+
+    @Benchmark
+    public List<String> jsonObject() {
+        return extractUrls(new JSONObject(new String(raw, StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public String pendingStreamed() throws Exception {
+        return TaskResponse.parse(pending).status;
+    }
+
+    @Benchmark
+    public String pendingJsonObject() {
+        return new JSONObject(new String(pending, StandardCharsets.UTF_8)).optString("status", "");
+    }
+
+    /** The URL walk the client did on a parsed JSONObject before the streaming scan. */
+    private static List<String> extractUrls(JSONObject json) {
+        List<String> urls = new ArrayList<>();
+        JSONObject result = json.optJSONObject("result");
+        if (result != null) {
+            if (result.has("sample")) urls.add(result.optString("sample", null));
+            JSONArray samples = result.optJSONArray("samples");
+            if (samples != null) for (int i = 0; i < samples.length(); i++) urls.add(samples.optString(i, null));
+            JSONArray outputs = result.optJSONArray("outputs");
+            if (outputs != null) for (int i = 0; i < outputs.length(); i++) {
+                JSONObject o = outputs.optJSONObject(i);
+                if (o == null) continue;
+                if (o.has("sample")) urls.add(o.optString("sample", null));
+                else if (o.has("url")) urls.add(o.optString("url", null));
+            }
+        }
+        if (json.has("url")) urls.add(json.optString("url", null));
+        urls.removeIf(x -> x == null || x.isBlank());
+        return urls;
+    }
+}
@@ -0,0 +1,122 @@
+package io.github.initio.kontext4j.cli;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import io.github.initio.kontext4j.EditRequest;
+import io.github.initio.kontext4j.ExpandRequest;
+import io.github.initio.kontext4j.FillRequest;
+import io.github.initio.kontext4j.GenerateRequest;
+import io.github.initio.kontext4j.KontextRequest;
+
+/**
+ * One manifest line:
+ *
+ * <pre>
+ * {"id":"cat-1", "model":"edit", "prompt":"Make it a watercolor", "inputs":["cat.jpg"],
+ *  "params":{"seed":42, "aspect_ratio":"1:1", "output_format":"png"}, "output":"out/cat-1.png"}
+ * </pre>
+ *
+ * - {@code model}: edit | fill | generate | expand; default edit with inputs, generate without
+ * - {@code inputs}: edit up to 4 images, fill [image, mask], expand [image], generate reference images
+ * - {@code params}: API fields by their JSON name; expand takes top/bottom/left/right here
+ * - {@code output}: file for the first image, or a directory (trailing "/") for all of them;
+ *   default {@code <out>/<id>.<jpg|png>}
+ * - {@code id}: defaults to {@code line-<n>}; used to skip finished jobs on resume
+ */
+final class Job {
+
+    final String id;
+    final int line;
+    final KontextRequest request;
+    final Path output;
+    final boolean outputIsDir;
+
+    private Job(String id, int line, KontextRequest request, Path output, boolean outputIsDir) {
+        this.id = id;
+        this.line = line;
+        this.request = request;
+        this.output = output;
+        this.outputIsDir = outputIsDir;
+    }
+
+    /** The id a line will get, without building its request (for resume bookkeeping). */
+    static String idOf(JSONObject o, int line) {
+        String id = o.optString("id", "");
+        return id.isEmpty() ? "line-" + line : id;
+    }
+
+    static Job parse(JSONObject o, int line, Path outDir) {
+        String id = idOf(o, line);
+        List<String> inputs = new ArrayList<>();
+        JSONArray in = o.optJSONArray("inputs");
+        if (in != null) for (int i = 0; i < in.length(); i++) inputs.add(in.getString(i));
+        JSONObject params = o.optJSONObject("params");
+        if (params == null) params = new JSONObject();
+        String model = o.optString("model", inputs.isEmpty() ? "generate" : "edit");
+
+        KontextRequest.Builder<?, ?> b;
+        switch (model) {
+            case "edit": {
+                if (inputs.size() > 4) throw new IllegalArgumentException("edit takes at most 4 inputs");
+                EditRequest.Builder e = EditRequest.builder();
+                for (String s : inputs) e.image(s);
+                b = e;
+                break;
+            }
+            case "fill": {
+                if (inputs.isEmpty() || inputs.size() > 2) throw new IllegalArgumentException("fill takes [image, mask]");
+                FillRequest.Builder f = FillRequest.builder().image(inputs.get(0));
+                if (inputs.size() > 1) f.mask(inputs.get(1));
+                b = f;
+                break;
+            }
+            case "generate":
+                b = GenerateRequest.builder().referenceImages(inputs);
+                break;
+            case "expand": {
+                if (inputs.size() != 1) throw new IllegalArgumentException("expand takes one input");
+                ExpandRequest.Builder x = ExpandRequest.builder().image(inputs.get(0))
+                        .margins(params.optInt("top"), params.optInt("bottom"), params.optInt("left"), params.optInt("right"));
+                params = new JSONObject(params.toMap());
+                for (String k : new String[]{"top", "bottom", "left", "right"}) params.remove(k);
+                b = x;
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown model: " + model);
+        }
+        if (o.has("prompt")) b.prompt(o.getString("prompt"));
+        for (String key : params.keySet()) {
+            Object v = params.get(key);
+            b.param(key, v == JSONObject.NULL ? null : v);
+        }
+
+        String out = o.optString("output", "");
+        boolean dir = out.endsWith("/");
+        Path output;
+        if (out.isEmpty()) {
+            String ext = "png".equals(params.optString("output_format")) ? ".png" : ".jpg";
+            output = outDir.resolve(id.replaceAll("[^A-Za-z0-9._-]", "_") + ext);
+        } else {
+            output = Path.of(out);
+        }
+        return new Job(id, line, b.build(), output, dir);
+    }
+
+    /** Parse a manifest line; null for blank lines and {@code #} comments. */
+    static JSONObject line(String text) {
+        String t = text.trim();
+        if (t.isEmpty() || t.startsWith("#")) return null;
+        try {
+            return new JSONObject(t);
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getMessage());
+        }
+    }
+}
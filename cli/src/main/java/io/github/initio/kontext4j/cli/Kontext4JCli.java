@@ -0,0 +1,246 @@
+package io.github.initio.kontext4j.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+
+import io.github.initio.kontext4j.HttpBlobStore;
+import io.github.initio.kontext4j.InputStrategy;
+import io.github.initio.kontext4j.Kontext4J;
+import io.github.initio.kontext4j.KontextResult;
+import io.github.initio.kontext4j.RateLimiter;
+
+/**
+ * Bulk runner: streams a JSONL manifest (see {@link Job}) through one client with at most
+ * {@code --concurrency} jobs in flight, downloads each job's images and appends a line to the results JSONL
+ * as soon as it finishes.
+ *
+ * <pre>
+ * java -jar kontext4j-cli.jar --manifest jobs.jsonl --out out/ --concurrency 32 [--results results.jsonl]
+ *      [--api-key KEY | env BFL_API_KEY] [--base-url URL] [--rate 10] [--max-wait 300]
+ *      [--input-strategy INLINE|PASSTHROUGH|STAGE] [--blob-store URL] [--progress 2] [--no-resume]
+ * </pre>
+ *
+ * The manifest is read line by line, so its size doesn't matter. Rerunning with the same results file skips
+ * every job already recorded as ok; jobs that were in flight when the run was killed are sent again.
+ * Exit code 0 when every job succeeded, 1 if any failed or the results file can't be written, 2 on bad arguments.
+ */
+public final class Kontext4JCli {
+
+    private Kontext4JCli() {}
+
+    public static void main(String[] args) throws Exception {
+        Options o;
+        try {
+            o = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(Options.USAGE);
+            System.exit(2);
+            return;
+        }
+        System.exit(run(o));
+    }
+
+    static int run(Options o) throws IOException, InterruptedException {
+        Kontext4J client = new Kontext4J().init(o.apiKey).setInputStrategy(o.inputStrategy);
+        if (o.baseUrl != null) client.setBaseUrl(o.baseUrl);
+        if (o.blobStore != null) client.setBlobStore(new HttpBlobStore(o.blobStore));
+        if (o.rate > 0) client.setRateLimiter(new RateLimiter(o.rate, Math.max(1, (int) Math.ceil(o.rate))));
+        if (o.maxWaitSeconds > 0) client.setMaxWaitMillis(TimeUnit.SECONDS.toMillis(o.maxWaitSeconds));
+
+        Set<String> finished = o.resume ? ResultsLog.completedIds(o.results) : Set.of();
+        if (!finished.isEmpty()) System.err.println("Resuming: " + finished.size() + " jobs already done");
+        Files.createDirectories(o.out);
+
+        Progress progress = new Progress();
+        IOException writeError;
+        Semaphore slots = new Semaphore(o.concurrency);
+        ExecutorService downloads = Executors.newFixedThreadPool(o.concurrency, r -> {
+            Thread t = new Thread(r, "kontext4j-cli-download");
+            t.setDaemon(true);
+            return t;
+        });
+        try (ResultsLog log = new ResultsLog(o.results);
+             BufferedReader manifest = open(o.manifest)) {
+            Thread printer = progress.startPrinting(System.err, o.progressMillis);
+            String text;
+            int line = 0;
+            while ((text = manifest.readLine()) != null) {
+                line++;
+                JSONObject json;
+                Job job;
+                try {
+                    json = Job.line(text);
+                    if (json == null) continue;
+                    if (finished.contains(Job.idOf(json, line))) {
+                        progress.skipped.increment();
+                        continue;
+                    }
+                    job = Job.parse(json, line, o.out);
+                } catch (RuntimeException e) {
+                    log.failed("line-" + line, line, e, 0);
+                    progress.failed.increment();
+                    continue;
+                }
+                slots.acquire(); // backpressure: the manifest is read no faster than jobs finish
+                if (log.error() != null) {
+                    slots.release();
+                    break;
+                }
+                progress.started();
+                run(client, job, downloads, log, progress).whenComplete((x, e) -> slots.release());
+            }
+            slots.acquire(o.concurrency); // drain
+            printer.interrupt();
+            writeError = log.error();
+        } finally {
+            downloads.shutdownNow();
+        }
+        System.err.println(progress.line());
+        if (writeError != null) {
+            System.err.println("Stopped: can't write " + o.results + ": " + writeError
+                    + ". Jobs recorded so far are kept; fix the problem and rerun to resume.");
+            return 1;
+        }
+        return progress.failed.sum() == 0 ? 0 : 1;
+    }
+
+    private static CompletableFuture<Void> run(Kontext4J client, Job job, ExecutorService downloads,
+                                               ResultsLog log, Progress progress) {
+        long start = System.nanoTime();
+        CompletableFuture<KontextResult> task;
+        try {
+            task = client.submit(job.request);
+        } catch (RuntimeException e) {
+            task = CompletableFuture.failedFuture(e);
+        }
+        return task.thenCompose(result -> save(client, job, result, downloads).thenAccept(paths -> {
+            long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            log.ok(job, result, paths, ms);
+            progress.finished(true, ms);
+        })).exceptionally(err -> {
+            long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Throwable cause = err;
+            while ((cause instanceof CompletionException || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            log.failed(job.id, job.line, cause, ms);
+            progress.finished(false, ms);
+            return null;
+        });
+    }
+
+    /** Write the job's images: all of them into a directory, or the first one to a file. */
+    private static CompletableFuture<List<Path>> save(Kontext4J client, Job job, KontextResult result,
+                                                      ExecutorService downloads) {
+        if (job.outputIsDir) return client.downloadAllAsync(result, job.output);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Path parent = job.output.toAbsolutePath().getParent();
+                if (parent != null) Files.createDirectories(parent);
+                client.downloadIndex(result, job.output, 0);
+                return List.of(job.output);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }, downloads);
+    }
+
+    private static BufferedReader open(Path manifest) throws IOException {
+        if (manifest.toString().equals("-")) {
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        return Files.newBufferedReader(manifest, StandardCharsets.UTF_8);
+    }
+
+    // ----------------------
+    // Arguments
+    // ----------------------
+
+    static final class Options {
+        static final String USAGE = "usage: kontext4j-cli --manifest FILE|- [--out DIR] [--results FILE] [--concurrency N]\n"
+                + "       [--api-key KEY] [--base-url URL] [--rate PER_SECOND] [--max-wait SECONDS]\n"
+                + "       [--input-strategy INLINE|PASSTHROUGH|STAGE] [--blob-store URL] [--progress SECONDS] [--no-resume]";
+
+        Path manifest;
+        Path out = Path.of("out");
+        Path results;
+        int concurrency = 16;
+        String apiKey = System.getenv("BFL_API_KEY");
+        String baseUrl;
+        double rate;
+        long maxWaitSeconds;
+        InputStrategy inputStrategy;
+        String blobStore;
+        long progressMillis = 2000;
+        boolean resume = true;
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if (a.equals("--no-resume")) {
+                    o.resume = false;
+                    continue;
+                }
+                if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + a);
+                String v = args[++i];
+                try {
+                    switch (a) {
+                        case "--manifest": o.manifest = Path.of(v); break;
+                        case "--out": o.out = Path.of(v); break;
+                        case "--results": o.results = Path.of(v); break;
+                        case "--concurrency": o.concurrency = Integer.parseInt(v); break;
+                        case "--api-key": o.apiKey = v; break;
+                        case "--base-url": o.baseUrl = v; break;
+                        case "--rate": o.rate = Double.parseDouble(v); break;
+                        case "--max-wait": o.maxWaitSeconds = Long.parseLong(v); break;
+                        case "--input-strategy": o.inputStrategy = strategy(v); break;
+                        case "--blob-store": o.blobStore = v; break;
+                        case "--progress": o.progressMillis = (long) (Double.parseDouble(v) * 1000); break;
+                        default: throw new IllegalArgumentException("Unknown option: " + a);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bad value for " + a + ": " + v);
+                }
+            }
+            if (o.manifest == null) throw new IllegalArgumentException("--manifest is required");
+            if (o.apiKey == null || o.apiKey.isBlank()) throw new IllegalArgumentException("--api-key or BFL_API_KEY is required");
+            if (o.concurrency < 1) throw new IllegalArgumentException("--concurrency must be >= 1");
+            if (o.progressMillis < 1) throw new IllegalArgumentException("--progress must be > 0");
+            if (o.inputStrategy == null) o.inputStrategy = o.blobStore != null ? InputStrategy.STAGE : InputStrategy.PASSTHROUGH;
+            if (o.results == null) {
+                o.results = o.manifest.toString().equals("-") ? Path.of("results.jsonl")
+                        : Path.of(o.manifest + ".results.jsonl");
+            }
+            return o;
+        }
+
+        private static InputStrategy strategy(String v) {
+            try {
+                return InputStrategy.valueOf(v.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("--input-strategy must be INLINE, PASSTHROUGH or STAGE");
+            }
+        }
+    }
+}
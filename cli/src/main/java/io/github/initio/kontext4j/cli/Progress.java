@@ -0,0 +1,77 @@
+package io.github.initio.kontext4j.cli;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.initio.kontext4j.LatencyHistogram;
+
+/** Live counters and end-to-end latency (submit to files on disk), printed every few seconds. */
+final class Progress {
+
+    private final long startNanos = System.nanoTime();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    final LongAdder ok = new LongAdder();
+    final LongAdder failed = new LongAdder();
+    final LongAdder skipped = new LongAdder();
+    final AtomicInteger running = new AtomicInteger();
+
+    private long lastDone;
+    private long lastNanos = startNanos;
+
+    void started() {
+        running.incrementAndGet();
+    }
+
+    void finished(boolean success, long millis) {
+        running.decrementAndGet();
+        if (success) {
+            ok.increment();
+            latency.record(millis);
+        } else {
+            failed.increment();
+        }
+    }
+
+    /** One status line: totals, overall and recent throughput, latency percentiles. */
+    synchronized String line() {
+        long now = System.nanoTime();
+        long done = ok.sum() + failed.sum();
+        double elapsed = (now - startNanos) / 1e9;
+        double recent = (done - lastDone) / Math.max(1e-9, (now - lastNanos) / 1e9);
+        lastDone = done;
+        lastNanos = now;
+        return String.format("[%s] %d ok, %d failed, %d skipped, %d running | %.1f jobs/s (now %.1f) | "
+                        + "p50 %s p90 %s p99 %s max %s",
+                clock(elapsed), ok.sum(), failed.sum(), skipped.sum(), running.get(),
+                done / Math.max(1e-9, elapsed), recent,
+                ms(latency.getPercentile(50)), ms(latency.getPercentile(90)), ms(latency.getPercentile(99)),
+                ms(latency.getMax()));
+    }
+
+    Thread startPrinting(PrintStream out, long everyMillis) {
+        Thread t = new Thread(() -> {
+            try {
+                while (true) {
+                    TimeUnit.MILLISECONDS.sleep(everyMillis);
+                    out.println(line());
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            }
+        }, "kontext4j-cli-progress");
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private static String clock(double seconds) {
+        long s = (long) seconds;
+        return String.format("%02d:%02d:%02d", s / 3600, (s / 60) % 60, s % 60);
+    }
+
+    private static String ms(long millis) {
+        return millis < 1000 ? millis + "ms" : String.format("%.1fs", millis / 1000.0);
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.initio.kontext4j.cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import io.github.initio.kontext4j.KontextResult;
+
+/**
+ * Append-only results JSONL, one line per finished job, flushed as it is written. It doubles as the
+ * checkpoint: on resume, jobs with an "ok" line are skipped. After a failed write nothing more is written
+ * and {@link #error()} says why; the run must stop, since finished jobs would no longer be recorded.
+ */
+final class ResultsLog implements Closeable {
+
+    private final BufferedWriter out;
+    private volatile IOException error;
+
+    ResultsLog(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /** Ids of jobs that finished ok in an earlier run; a torn last line (killed mid-write) is ignored. */
+    static Set<String> completedIds(Path file) throws IOException {
+        Set<String> ids = new HashSet<>();
+        if (!Files.exists(file)) return ids;
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                try {
+                    JSONObject o = new JSONObject(line);
+                    if ("ok".equals(o.optString("status"))) ids.add(o.getString("id"));
+                } catch (JSONException ignored) {
+                    // partial line from a killed run
+                }
+            }
+        }
+        return ids;
+    }
+
+    void ok(Job job, KontextResult result, List<Path> outputs, long millis) {
+        JSONObject o = new JSONObject();
+        o.put("id", job.id);
+        o.put("line", job.line);
+        o.put("status", "ok");
+        o.put("task_id", result.getTaskId());
+        o.put("urls", result.getUrls());
+        o.put("outputs", outputs.stream().map(Path::toString).toArray());
+        o.put("millis", millis);
+        o.put("polls", result.getPollCount());
+        write(o);
+    }
+
+    void failed(String id, int line, Throwable error, long millis) {
+        JSONObject o = new JSONObject();
+        o.put("id", id);
+        o.put("line", line);
+        o.put("status", "failed");
+        o.put("error", String.valueOf(error));
+        o.put("millis", millis);
+        write(o);
+    }
+
+    /** First write failure, or null. */
+    IOException error() {
+        return error;
+    }
+
+    private synchronized void write(JSONObject o) {
+        if (error != null) return;
+        try {
+            out.write(o.toString());
+            out.newLine();
+            out.flush();
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.initio.kontext4j.micrometer;
+
+import io.github.initio.kontext4j.KontextListener;
+import io.github.initio.kontext4j.KontextResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Publishes Kontext4J lifecycle events to a Micrometer {@link MeterRegistry}.
+ *
+ * Meters (tags {@code endpoint}, {@code model}; polls also {@code status}, failures {@code exception}):
+ * <ul>
+ *   <li>{@code kontext4j.task.submit}, {@code .queue}, {@code .wait}, {@code .total} - timers</li>
+ *   <li>{@code kontext4j.task.polls} - polls per completed task</li>
+ *   <li>{@code kontext4j.task.completed}, {@code kontext4j.task.failed} - counters</li>
+ *   <li>{@code kontext4j.poll} - timer per poll round trip</li>
+ *   <li>{@code kontext4j.download} - timer, {@code kontext4j.download.size} - bytes</li>
+ * </ul>
+ *
+ * Use an OTLP registry ({@code micrometer-registry-otlp}) to ship the same meters to OpenTelemetry.
+ */
+public class MicrometerListener implements KontextListener {
+
+    private final MeterRegistry registry;
+    private boolean percentileHistograms = true;
+
+    public MicrometerListener(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Publish histogram buckets for server-side percentiles (default true). Set before registering. */
+    public MicrometerListener setPercentileHistograms(boolean enabled) {
+        this.percentileHistograms = enabled;
+        return this;
+    }
+
+    @Override
+    public void onCreated(Task task, long submitMillis) {
+        timer("kontext4j.task.submit", task).record(Duration.ofMillis(submitMillis));
+    }
+
+    @Override
+    public void onPoll(Task task, String status, long latencyMillis) {
+        Timer.builder("kontext4j.poll")
+                .tag("endpoint", task.endpoint())
+                .tag("model", task.model())
+                .tag("status", status.isEmpty() ? "none" : status)
+                .publishPercentileHistogram(percentileHistograms)
+                .register(registry)
+                .record(Duration.ofMillis(latencyMillis));
+    }
+
+    @Override
+    public void onCompleted(Task task, KontextResult result) {
+        counter("kontext4j.task.completed", task).increment();
+        timer("kontext4j.task.wait", task).record(Duration.ofMillis(result.getWaitMillis()));
+        timer("kontext4j.task.total", task).record(Duration.ofMillis(result.getTotalMillis()));
+        DistributionSummary.builder("kontext4j.task.polls")
+                .tag("endpoint", task.endpoint())
+                .tag("model", task.model())
+                .register(registry)
+                .record(result.getPollCount());
+        long queued = task.millisInStatus("Pending");
+        if (queued >= 0) timer("kontext4j.task.queue", task).record(Duration.ofMillis(queued));
+    }
+
+    @Override
+    public void onFailed(Task task, Throwable error) {
+        Counter.builder("kontext4j.task.failed")
+                .tag("endpoint", task.endpoint())
+                .tag("model", task.model())
+                .tag("exception", error.getClass().getSimpleName())
+                .register(registry)
+                .increment();
+    }
+
+    @Override
+    public void onDownloaded(String url, Path target, long bytes, long millis) {
+        Timer.builder("kontext4j.download")
+                .publishPercentileHistogram(percentileHistograms)
+                .register(registry)
+                .record(Duration.ofMillis(millis));
+        if (bytes >= 0) {
+            DistributionSummary.builder("kontext4j.download.size").baseUnit("bytes").register(registry).record(bytes);
+        }
+    }
+
+    private Timer timer(String name, Task task) {
+        return Timer.builder(name)
+                .tag("endpoint", task.endpoint())
+                .tag("model", task.model())
+                .publishPercentileHistogram(percentileHistograms)
+                .register(registry);
+    }
+
+    private Counter counter(String name, Task task) {
+        return Counter.builder(name)
+                .tag("endpoint", task.endpoint())
+                .tag("model", task.model())
+                .register(registry);
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.initio.kontext4j.mock;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.initio.kontext4j.GenerateRequest;
+import io.github.initio.kontext4j.Kontext4J;
+import io.github.initio.kontext4j.LatencyHistogram;
+import io.github.initio.kontext4j.PollScheduler;
+import io.github.initio.kontext4j.WebhookReceiver;
+
+/**
+ * Drives one client against a {@link MockBflServer} at increasing concurrency and prints, per level:
+ * end-to-end latency (p50/p99 of submit to Ready), peak client threads, peak heap, polls sent and wall time.
+ * The server runs in the same JVM; its threads are left out of the thread count, not out of the heap.
+ *
+ * <pre>
+ * java -jar kontext4j-mock.jar [--levels 10,100,1000] [--delay-ms 1000] [--jitter-ms 500]
+ *      [--429 0.05] [--fail 0.01] [--outputs 1] [--webhooks]
+ * </pre>
+ *
+ * Each level gets a fresh server, client and poll scheduler, so counts don't leak between levels.
+ */
+public final class LoadTest {
+
+    private LoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        Options o;
+        try {
+            o = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(Options.USAGE);
+            System.exit(2);
+            return;
+        }
+        System.out.printf("queue delay %d-%d ms, 429 rate %.2f, failure rate %.2f, %s%n",
+                o.delayMillis, o.delayMillis + o.jitterMillis, o.rateLimitRate, o.failureRate,
+                o.webhooks ? "webhooks" : "polling");
+        System.out.println(" tasks     ok  failed     p50      p99   threads  heap MB  client polls  server polls   wall");
+        for (int n : o.levels) System.out.println(run(o, n));
+        System.exit(0);
+    }
+
+    static String run(Options o, int tasks) throws Exception {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        AtomicLong peakHeap = new AtomicLong(memory.getHeapMemoryUsage().getUsed());
+        AtomicLong peakThreads = new AtomicLong(clientThreads(threadBean));
+        Thread sampler = new Thread(() -> {
+            try {
+                while (true) {
+                    peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                    peakThreads.accumulateAndGet(clientThreads(threadBean), Math::max);
+                    TimeUnit.MILLISECONDS.sleep(20);
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            }
+        }, "kontext4j-loadtest-heap");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder failed = new LongAdder();
+        PollScheduler scheduler = new PollScheduler(64, 0.2);
+        WebhookReceiver receiver = null;
+        long start = System.nanoTime();
+        try (MockBflServer bfl = MockBflServer.start()
+                .setQueueDelayMillis(o.delayMillis, o.delayMillis + o.jitterMillis)
+                .setRateLimitRate(o.rateLimitRate)
+                .setRetryAfterMillis(200)
+                .setFailureRate(o.failureRate)
+                .setOutputs(o.outputs)) {
+            Kontext4J client = new Kontext4J().init("load-test")
+                    .setBaseUrl(bfl.getBaseUrl())
+                    .setPollScheduler(scheduler)
+                    .setMaxWaitMillis(TimeUnit.MINUTES.toMillis(5));
+            if (o.webhooks) {
+                receiver = WebhookReceiver.start(new InetSocketAddress("127.0.0.1", 0), null, "load-test-secret");
+                client.setWebhookReceiver(receiver);
+            }
+            List<CompletableFuture<?>> all = new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                GenerateRequest req = GenerateRequest.builder().prompt("load test " + i).seed(i).build();
+                all.add(client.submit(req).whenComplete((r, e) -> {
+                    if (e == null) latency.record(r.getTotalMillis());
+                    else failed.increment();
+                }));
+            }
+            CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).exceptionally(e -> null).join();
+            long wall = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            sampler.interrupt();
+            return String.format("%6d %6d %7d %7s %8s %9d %8.1f %13d %13d %6s",
+                    tasks, latency.getCount(), failed.sum(), ms(latency.getPercentile(50)), ms(latency.getPercentile(99)),
+                    peakThreads.get(), peakHeap.get() / (1024.0 * 1024.0),
+                    scheduler.getTotalPolls(), bfl.getPolls(), ms(wall));
+        } finally {
+            sampler.interrupt();
+            scheduler.close();
+            if (receiver != null) receiver.close();
+        }
+    }
+
+    /** Live threads that aren't the mock server's (or this driver's sampler). */
+    private static long clientThreads(ThreadMXBean bean) {
+        long n = 0;
+        for (ThreadInfo t : bean.getThreadInfo(bean.getAllThreadIds(), 0)) {
+            if (t != null && !t.getThreadName().startsWith("mock-bfl") && !t.getThreadName().startsWith("kontext4j-loadtest")) n++;
+        }
+        return n;
+    }
+
+    private static String ms(long millis) {
+        return millis < 1000 ? millis + "ms" : String.format("%.2fs", millis / 1000.0);
+    }
+
+    // ----------------------
+    // Arguments
+    // ----------------------
+
+    static final class Options {
+        static final String USAGE = "usage: kontext4j-mock [--levels 10,100,1000] [--delay-ms MS] [--jitter-ms MS]\n"
+                + "       [--429 RATE] [--fail RATE] [--outputs N] [--webhooks]";
+
+        int[] levels = {10, 100, 1000};
+        long delayMillis = 1000;
+        long jitterMillis = 500;
+        double rateLimitRate;
+        double failureRate;
+        int outputs = 1;
+        boolean webhooks;
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if (a.equals("--webhooks")) {
+                    o.webhooks = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + a);
+                String v = args[++i];
+                try {
+                    switch (a) {
+                        case "--levels":
+                            String[] parts = v.split(",");
+                            o.levels = new int[parts.length];
+                            for (int j = 0; j < parts.length; j++) o.levels[j] = Integer.parseInt(parts[j].trim());
+                            break;
+                        case "--delay-ms": o.delayMillis = Long.parseLong(v); break;
+                        case "--jitter-ms": o.jitterMillis = Long.parseLong(v); break;
+                        case "--429": o.rateLimitRate = Double.parseDouble(v); break;
+                        case "--fail": o.failureRate = Double.parseDouble(v); break;
+                        case "--outputs": o.outputs = Integer.parseInt(v); break;
+                        default: throw new IllegalArgumentException("Unknown option: " + a);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bad value for " + a + ": " + v);
+                }
+            }
+            for (int n : o.levels) if (n < 1) throw new IllegalArgumentException("--levels must be >= 1");
+            return o;
+        }
+    }
+}
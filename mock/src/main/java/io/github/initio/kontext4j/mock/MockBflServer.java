@@ -0,0 +1,389 @@
+package io.github.initio.kontext4j.mock;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for the BFL API: {@code flux-kontext-pro}, {@code flux-1-fill} and
+ * {@code flux-pro-1.0-expand} task creation, {@code get_result} polling and result image downloads.
+ *
+ * <pre>
+ * try (MockBflServer bfl = MockBflServer.start().setQueueDelayMillis(200, 800).setRateLimitRate(0.05)) {
+ *     Kontext4J k = new Kontext4J().init("test").setBaseUrl(bfl.getBaseUrl());
+ *     k.execute(GenerateRequest.builder().prompt("a cat").build());
+ * }
+ * </pre>
+ *
+ * - Tasks stay Pending for a random queue delay in [min, max], then turn Ready (or Error, see {@link #setTaskFailureRate})
+ * - Creation answers 429 with Retry-After or 500 at the configured rates
+ * - A {@code webhook_url} in the body gets a signed callback when the task is done (HMAC-SHA256 of the body
+ *   with {@code webhook_secret}, hex, in {@code X-Webhook-Signature})
+ * - Results can carry many sample URLs and images of any size, to exercise large payloads
+ *
+ * Tasks are kept until {@link #reset()}. Meant for tests and load tests, not for production traffic.
+ */
+public final class MockBflServer implements AutoCloseable {
+
+    public static final String SIGNATURE_HEADER = "X-Webhook-Signature";
+
+    private static final String[] ENDPOINTS = {"/v1/flux-kontext-pro", "/v1/flux-1-fill", "/v1/flux-pro-1.0-expand"};
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timers;
+    private final ExecutorService callbacks;
+    private final String baseUrl;
+    private final Map<String, Task> tasks = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    private volatile long minDelayMillis = 500;
+    private volatile long maxDelayMillis = 1500;
+    private volatile double rateLimitRate;
+    private volatile long retryAfterMillis = 1000;
+    private volatile double failureRate;
+    private volatile double taskFailureRate;
+    private volatile int outputs = 1;
+    private volatile int imageBytes = 64 * 1024;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder polls = new LongAdder();
+    private final LongAdder downloads = new LongAdder();
+    private final LongAdder webhooksSent = new LongAdder();
+    private final LongAdder webhooksFailed = new LongAdder();
+
+    private MockBflServer(HttpServer server) {
+        this.server = server;
+        this.baseUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+        this.executor = Executors.newCachedThreadPool(r -> daemon(r, "mock-bfl-http"));
+        this.timers = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "mock-bfl-timer"));
+        this.callbacks = Executors.newCachedThreadPool(r -> daemon(r, "mock-bfl-webhook"));
+        for (String ep : ENDPOINTS) server.createContext(ep, this::create);
+        server.createContext("/v1/get_result", this::poll);
+        server.createContext("/results/", this::download);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /** Bind to a free port on 127.0.0.1. */
+    public static MockBflServer start() throws IOException {
+        return start(new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    public static MockBflServer start(InetSocketAddress bind) throws IOException {
+        return new MockBflServer(HttpServer.create(bind, 4096));
+    }
+
+    /** Pass to {@code Kontext4J#setBaseUrl}. */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    // ----------------------
+    // Behaviour
+    // ----------------------
+
+    /** How long a task stays Pending, uniformly random in [min, max] (default 500-1500 ms). */
+    public MockBflServer setQueueDelayMillis(long min, long max) {
+        if (min < 0 || max < min) throw new IllegalArgumentException("need 0 <= min <= max");
+        this.minDelayMillis = min;
+        this.maxDelayMillis = max;
+        return this;
+    }
+
+    /** Fraction of creations answered with 429 and Retry-After (default 0). */
+    public MockBflServer setRateLimitRate(double rate) {
+        this.rateLimitRate = fraction(rate);
+        return this;
+    }
+
+    /** Retry-After sent with a 429 (default 1000 ms). */
+    public MockBflServer setRetryAfterMillis(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("retryAfterMillis must be >= 0");
+        this.retryAfterMillis = millis;
+        return this;
+    }
+
+    /** Fraction of creations answered with HTTP 500 (default 0). */
+    public MockBflServer setFailureRate(double rate) {
+        this.failureRate = fraction(rate);
+        return this;
+    }
+
+    /** Fraction of accepted tasks that end in status Error instead of Ready (default 0). */
+    public MockBflServer setTaskFailureRate(double rate) {
+        this.taskFailureRate = fraction(rate);
+        return this;
+    }
+
+    /** Sample URLs per result: {@code result.sample} plus a {@code samples} array when more than one (default 1). */
+    public MockBflServer setOutputs(int outputs) {
+        if (outputs < 1) throw new IllegalArgumentException("outputs must be >= 1");
+        this.outputs = outputs;
+        return this;
+    }
+
+    /** Size of each result image (default 64 KB). */
+    public MockBflServer setImageBytes(int bytes) {
+        if (bytes < 8) throw new IllegalArgumentException("imageBytes must be >= 8");
+        this.imageBytes = bytes;
+        return this;
+    }
+
+    /** Forget every task and zero the counters. */
+    public void reset() {
+        tasks.clear();
+        for (LongAdder a : new LongAdder[]{created, rateLimited, failures, polls, downloads, webhooksSent, webhooksFailed}) {
+            a.reset();
+        }
+    }
+
+    // ----------------------
+    // Metrics
+    // ----------------------
+
+    public long getCreated() { return created.sum(); }
+    public long getRateLimited() { return rateLimited.sum(); }
+    public long getFailures() { return failures.sum(); }
+    public long getPolls() { return polls.sum(); }
+    public long getDownloads() { return downloads.sum(); }
+    public long getWebhooksSent() { return webhooksSent.sum(); }
+    public long getWebhooksFailed() { return webhooksFailed.sum(); }
+
+    /** Tasks accepted and not yet Ready/Error. */
+    public int getPendingTasks() {
+        long now = System.currentTimeMillis();
+        int n = 0;
+        for (Task t : tasks.values()) if (t.readyAt > now) n++;
+        return n;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        timers.shutdownNow();
+        callbacks.shutdownNow();
+    }
+
+    // ----------------------
+    // HTTP
+    // ----------------------
+
+    private void create(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) {
+                send(ex, 405, error("Method not allowed"));
+                return;
+            }
+            String path = ex.getRequestURI().getPath();
+            byte[] raw;
+            try (InputStream in = ex.getRequestBody()) {
+                raw = in.readAllBytes();
+            }
+            if (ex.getRequestHeaders().getFirst("x-key") == null) {
+                send(ex, 403, error("Missing x-key"));
+                return;
+            }
+            JSONObject body;
+            try {
+                body = new JSONObject(new String(raw, StandardCharsets.UTF_8));
+            } catch (JSONException e) {
+                send(ex, 422, error("Invalid JSON: " + e.getMessage()));
+                return;
+            }
+            boolean needsImage = !path.endsWith("flux-kontext-pro");
+            if (needsImage && !body.has("image")) {
+                send(ex, 422, error("image is required"));
+                return;
+            }
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            if (rnd.nextDouble() < rateLimitRate) {
+                rateLimited.increment();
+                ex.getResponseHeaders().set("Retry-After", retryAfter(retryAfterMillis));
+                send(ex, 429, error("Too many active tasks"));
+                return;
+            }
+            if (rnd.nextDouble() < failureRate) {
+                failures.increment();
+                send(ex, 500, error("Internal server error"));
+                return;
+            }
+            String id = "mock-" + ids.incrementAndGet();
+            long delay = minDelayMillis + (maxDelayMillis > minDelayMillis ? rnd.nextLong(maxDelayMillis - minDelayMillis + 1) : 0);
+            Task task = new Task(id, System.currentTimeMillis() + delay, rnd.nextDouble() < taskFailureRate, outputs);
+            tasks.put(id, task);
+            created.increment();
+            String webhookUrl = body.optString("webhook_url", null);
+            if (webhookUrl != null) {
+                String secret = body.optString("webhook_secret", null);
+                timers.schedule(() -> callbacks.execute(() -> callback(task, webhookUrl, secret)), delay, TimeUnit.MILLISECONDS);
+            }
+            JSONObject res = new JSONObject();
+            res.put("id", id);
+            res.put("polling_url", baseUrl + "/v1/get_result?id=" + id);
+            send(ex, 200, res.toString());
+        }
+    }
+
+    private void poll(HttpExchange ex) throws IOException {
+        try (ex) {
+            polls.increment();
+            String query = ex.getRequestURI().getRawQuery();
+            String id = query != null && query.startsWith("id=") ? query.substring(3) : null;
+            Task task = id == null ? null : tasks.get(id);
+            if (task == null) {
+                send(ex, 200, new JSONObject().put("id", String.valueOf(id)).put("status", "Task not found").toString());
+                return;
+            }
+            send(ex, 200, status(task).toString());
+        }
+    }
+
+    private void download(HttpExchange ex) throws IOException {
+        try (ex) {
+            downloads.increment();
+            int size = imageBytes;
+            ex.getResponseHeaders().set("Content-Type", "image/png");
+            ex.sendResponseHeaders(200, size);
+            try (OutputStream out = ex.getResponseBody()) {
+                byte[] chunk = new byte[Math.min(size, 64 * 1024)];
+                chunk[0] = (byte) 0x89;
+                chunk[1] = 'P';
+                chunk[2] = 'N';
+                chunk[3] = 'G';
+                for (int left = size; left > 0; left -= chunk.length) {
+                    out.write(chunk, 0, Math.min(left, chunk.length));
+                    chunk[0] = chunk[1] = chunk[2] = chunk[3] = 0;
+                }
+            }
+        }
+    }
+
+    private JSONObject status(Task t) {
+        JSONObject o = new JSONObject().put("id", t.id);
+        if (System.currentTimeMillis() < t.readyAt) return o.put("status", "Pending");
+        if (t.fails) return o.put("status", "Error").put("details", "Mock task failure");
+        JSONObject result = new JSONObject().put("sample", sampleUrl(t, 0)).put("seed", 42);
+        if (t.outputs > 1) {
+            JSONArray samples = new JSONArray();
+            for (int i = 0; i < t.outputs; i++) samples.put(sampleUrl(t, i));
+            result.put("samples", samples);
+        }
+        return o.put("status", "Ready").put("result", result);
+    }
+
+    private String sampleUrl(Task t, int index) {
+        return baseUrl + "/results/" + t.id + "/" + index + ".png";
+    }
+
+    /**
+     * POST the final status to the task's webhook_url. Plain HttpURLConnection on this server's own named
+     * threads, so a load test can tell them from the client's.
+     */
+    private void callback(Task task, String url, String secret) {
+        byte[] payload = status(task).put("task_id", task.id).toString().getBytes(StandardCharsets.UTF_8);
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) URI.create(url).toURL().openConnection();
+            conn.setConnectTimeout(5000);
+            conn.setReadTimeout(10_000);
+            conn.setRequestMethod("POST");
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(payload.length);
+            conn.setRequestProperty("Content-Type", "application/json");
+            if (secret != null) conn.setRequestProperty(SIGNATURE_HEADER, hmacHex(secret, payload));
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(payload);
+            }
+            if (conn.getResponseCode() / 100 == 2) webhooksSent.increment();
+            else webhooksFailed.increment();
+        } catch (IOException | RuntimeException e) {
+            webhooksFailed.increment();
+        } finally {
+            if (conn != null) conn.disconnect(); // no keep-alive cache, no extra JDK thread
+        }
+    }
+
+    private static String hmacHex(String secret, byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : mac.doFinal(body)) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return sb.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Whole seconds as the standard has it; a dot decimal (which Kontext4J also reads) below that. */
+    private static String retryAfter(long millis) {
+        return millis % 1000 == 0 ? String.valueOf(millis / 1000) : String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+    }
+
+    private static String error(String detail) {
+        return new JSONObject().put("detail", detail).toString();
+    }
+
+    private static void send(HttpExchange ex, int code, String json) throws IOException {
+        byte[] b = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(code, b.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(b);
+        }
+    }
+
+    private static double fraction(double rate) {
+        if (rate < 0 || rate > 1) throw new IllegalArgumentException("rate must be in [0, 1]");
+        return rate;
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private static final class Task {
+        final String id;
+        final long readyAt;
+        final boolean fails;
+        final int outputs;
+
+        Task(String id, long readyAt, boolean fails, int outputs) {
+            this.id = id;
+            this.readyAt = readyAt;
+            this.fails = fails;
+            this.outputs = outputs;
+        }
+    }
+}
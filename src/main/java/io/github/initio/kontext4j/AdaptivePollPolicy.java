@@ -0,0 +1,126 @@
+package io.github.initio.kontext4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Poll policy that learns how long tasks take and polls densely only when a result is likely.
+ *
+ * - Keeps a running latency estimate (EWMA mean + mean deviation) per endpoint, and per
+ *   endpoint+status of the time left once a status (e.g. "Pending") was first seen
+ * - Before the expected completion window: sleeps until the window opens (at most maxDelay)
+ * - Inside the window: polls every minDelay
+ * - Past the window: backs off, each wait half the time overdue (minDelay..maxDelay)
+ * - Without enough history: exponential backoff from initialDelay
+ */
+public final class AdaptivePollPolicy implements PollPolicy {
+
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+    private final long initialDelayMillis;
+    private final double growth;
+    private final int minSamples;
+    private final double alpha;
+
+    private final Map<String, Stats> completion = new ConcurrentHashMap<>();
+    private final Map<String, Stats> afterStatus = new ConcurrentHashMap<>();
+
+    /** Defaults: 250 ms dense polling, 10 s max wait, cold start 500 ms growing 1.5x, learn after 3 samples. */
+    public AdaptivePollPolicy() {
+        this(250, 10_000, 500, 1.5, 3, 0.2);
+    }
+
+    /**
+     * @param minDelayMillis poll spacing inside the expected completion window
+     * @param maxDelayMillis longest single wait
+     * @param initialDelayMillis first wait while an endpoint has no history
+     * @param growth backoff multiplier while an endpoint has no history
+     * @param minSamples completions needed before estimates are trusted
+     * @param alpha EWMA weight of each new sample (0..1]
+     */
+    public AdaptivePollPolicy(long minDelayMillis, long maxDelayMillis, long initialDelayMillis,
+                              double growth, int minSamples, double alpha) {
+        if (minDelayMillis < 0 || maxDelayMillis < minDelayMillis) throw new IllegalArgumentException("Need 0 <= minDelay <= maxDelay");
+        if (growth < 1) throw new IllegalArgumentException("growth must be >= 1");
+        if (alpha <= 0 || alpha > 1) throw new IllegalArgumentException("alpha must be in (0, 1]");
+        this.minDelayMillis = minDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.initialDelayMillis = initialDelayMillis;
+        this.growth = growth;
+        this.minSamples = Math.max(1, minSamples);
+        this.alpha = alpha;
+    }
+
+    @Override
+    public long nextDelayMillis(State state) {
+        long elapsed = state.elapsedMillis();
+        double expectedDone;
+        double deviation;
+
+        Stats byStatus = afterStatus.get(key(state.endpoint(), state.status()));
+        Stats byEndpoint = completion.get(state.endpoint());
+        long entered = state.enteredStatusAtMillis(state.status());
+        if (byStatus != null && byStatus.count() >= minSamples && entered >= 0) {
+            expectedDone = entered + byStatus.mean();
+            deviation = byStatus.deviation();
+        } else if (byEndpoint != null && byEndpoint.count() >= minSamples) {
+            expectedDone = byEndpoint.mean();
+            deviation = byEndpoint.deviation();
+        } else {
+            double d = initialDelayMillis * Math.pow(growth, Math.max(0, state.polls() - 1));
+            return clamp(d);
+        }
+
+        double window = Math.max(2.0 * deviation, 2.0 * minDelayMillis);
+        double untilExpected = expectedDone - elapsed;
+        if (untilExpected > window) return clamp(untilExpected - window);   // not yet: sleep until the window opens
+        if (untilExpected > -window) return minDelayMillis;                  // inside the window: poll densely
+        return clamp((-untilExpected - window) / 2);                         // overdue: back off
+    }
+
+    @Override
+    public void onComplete(State state) {
+        long elapsed = state.elapsedMillis();
+        completion.computeIfAbsent(state.endpoint(), k -> new Stats()).add(elapsed, alpha);
+        for (Map.Entry<String, Long> e : state.statusHistory().entrySet()) {
+            afterStatus.computeIfAbsent(key(state.endpoint(), e.getKey()), k -> new Stats())
+                    .add(elapsed - e.getValue(), alpha);
+        }
+    }
+
+    /** Expected time to completion for an endpoint in millis, or -1 without enough history. */
+    public double getExpectedMillis(String endpoint) {
+        Stats s = completion.get(endpoint);
+        return s == null || s.count() < minSamples ? -1 : s.mean();
+    }
+
+    private long clamp(double d) {
+        return (long) Math.max(minDelayMillis, Math.min(maxDelayMillis, d));
+    }
+
+    private static String key(String endpoint, String status) {
+        return endpoint + '|' + (status == null ? "" : status.toLowerCase());
+    }
+
+    /** EWMA of a latency and of its absolute deviation. */
+    private static final class Stats {
+        private double mean;
+        private double deviation;
+        private long count;
+
+        synchronized void add(double sample, double alpha) {
+            if (count++ == 0) {
+                mean = sample;
+                deviation = sample / 4; // no spread yet; assume a modest one
+                return;
+            }
+            double a = Math.max(alpha, 1.0 / count); // plain average until enough samples
+            deviation += a * (Math.abs(sample - mean) - deviation);
+            mean += a * (sample - mean);
+        }
+
+        synchronized double mean() { return mean; }
+        synchronized double deviation() { return deviation; }
+        synchronized long count() { return count; }
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+
+/** Reads raw bytes from a stream and yields their base64 encoding, one fixed-size chunk at a time. */
+final class Base64InputStream extends InputStream {
+
+    private static final int RAW_CHUNK = 48 * 1024; // multiple of 3: no padding until the very end
+
+    private final InputStream in;
+    private final byte[] raw = new byte[RAW_CHUNK];
+    private final byte[] encoded = new byte[RAW_CHUNK / 3 * 4];
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    Base64InputStream(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return encoded[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(encoded, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    private boolean fill() throws IOException {
+        if (pos < limit) return true;
+        if (eof) return false;
+        int n = 0;
+        while (n < raw.length) {
+            int r = in.read(raw, n, raw.length - n);
+            if (r < 0) {
+                eof = true;
+                break;
+            }
+            n += r;
+        }
+        if (n == 0) return false;
+        byte[] src = n == raw.length ? raw : java.util.Arrays.copyOf(raw, n);
+        limit = Base64.getEncoder().encode(src, encoded);
+        pos = 0;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.initio.kontext4j;
+
+/** Outcome of one request of a {@link KontextBatch}: either a result or the error it failed with. */
+public final class BatchItem {
+
+    private final int index;
+    private final KontextRequest request;
+    private final KontextResult result;
+    private final Throwable error;
+
+    BatchItem(int index, KontextRequest request, KontextResult result, Throwable error) {
+        this.index = index;
+        this.request = request;
+        this.result = result;
+        this.error = error;
+    }
+
+    /** Position of the request in the submitted list. */
+    public int getIndex() {
+        return index;
+    }
+
+    public KontextRequest getRequest() {
+        return request;
+    }
+
+    /** The result, or null if the request failed. */
+    public KontextResult getResult() {
+        return result;
+    }
+
+    /** Why the request failed, or null on success. */
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchItem[" + index + ", " + (error == null ? result : "error=" + error) + "]";
+    }
+}
@@ -0,0 +1,19 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+
+/**
+ * Somewhere to put input images so the API can fetch them by URL ({@link InputStrategy#STAGE}).
+ *
+ * Built in: {@link LocalBlobStore} (embedded HTTP file server) and {@link HttpBlobStore} (HTTP PUT to an
+ * S3-compatible or WebDAV bucket). Anything else (an S3 SDK with presigned URLs, a CDN) plugs in here.
+ */
+public interface BlobStore {
+
+    /**
+     * Store {@code data} under {@code key} and return a URL the API can fetch it from. Keys are content hashes
+     * plus an extension ({@code 9f86d0...e3b.png}), so a key that is already stored holds the same bytes and
+     * needn't be written again. The URL must stay valid for as long as the client may reuse it.
+     */
+    String put(String key, byte[] data, String contentType) throws IOException;
+}
@@ -0,0 +1,77 @@
+package io.github.initio.kontext4j;
+
+/**
+ * Per-endpoint breaker: after {@code failureThreshold} consecutive failures (transport errors or 5xx)
+ * calls fail fast with {@link CircuitOpenException} for {@code openMillis}; then a single trial call
+ * is let through and its outcome closes or re-opens the circuit.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long trials;
+
+    CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /** -1 if the call must fail fast, 0 if it may proceed, else the number of the half-open trial it now is. */
+    synchronized long acquire() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        switch (state) {
+            case CLOSED:
+                return 0;
+            case HALF_OPEN:
+                if (trialInFlight) return -1;
+                trialInFlight = true;
+                return ++trials;
+            default:
+                return -1;
+        }
+    }
+
+    /** The call from {@link #acquire()} ended without an outcome (cancelled); free its trial slot, if it had one. */
+    synchronized void release(long trial) {
+        if (trial > 0 && trial == trials && state == State.HALF_OPEN) trialInFlight = false;
+    }
+
+    synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        trialInFlight = false;
+    }
+
+    synchronized void onFailure() {
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    CircuitOpenException openException() {
+        return new CircuitOpenException("Circuit open for " + name + " after " + failureThreshold
+                + " consecutive failures; retrying after " + openMillis + "ms");
+    }
+}
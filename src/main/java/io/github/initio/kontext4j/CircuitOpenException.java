@@ -0,0 +1,13 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+
+/** Failed fast without a request: the endpoint's circuit breaker is open after repeated failures. */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,383 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result download pipeline.
+ *
+ * - Each file is written through a FileChannel into {@code <name>.part}, then atomically renamed
+ * - A leftover .part file is resumed with an HTTP Range request (a 200 reply restarts it). The URL and
+ *   validator (ETag or Last-Modified) it came from are kept in {@code <name>.part.src} and sent as If-Range;
+ *   a .part from another URL, or a 206 that doesn't continue where it stops, is thrown away
+ * - data: URLs are decoded straight to disk, no network call
+ * - {@link #downloadAll} runs at most {@code concurrency} downloads at once
+ */
+final class Downloads {
+
+    // transfer() body results below zero: not written to the .part file
+    private static final long COMPLETE = -1;   // 416 and the .part already holds the whole file
+    private static final long RESTART = -2;    // the .part doesn't belong to this response; start over
+
+    private final Kontext4J client;
+
+    Downloads(Kontext4J client) {
+        this.client = client;
+    }
+
+    /** Download every URL into {@code dir}; the returned paths are in the same order as the URLs. */
+    CompletableFuture<List<Path>> downloadAll(List<String> urls, String namePrefix, Path dir, int concurrency) {
+        int n = urls.size();
+        Path[] out = new Path[n];
+        CompletableFuture<List<Path>> all = new CompletableFuture<>();
+        if (n == 0) {
+            all.complete(List.of());
+            return all;
+        }
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            all.completeExceptionally(e);
+            return all;
+        }
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        Runnable[] worker = new Runnable[1];
+        worker[0] = () -> {
+            int i = next.getAndIncrement();
+            if (i >= n || all.isDone()) return;
+            String url = urls.get(i);
+            Path target = dir.resolve(namePrefix + "_" + i + extension(url));
+            download(url, target).whenComplete((p, err) -> {
+                if (err != null) {
+                    all.completeExceptionally(Kontext4J.unwrap(err));
+                    return;
+                }
+                out[i] = p;
+                if (finished.incrementAndGet() == n) {
+                    all.complete(List.of(out));
+                } else {
+                    worker[0].run();
+                }
+            });
+        };
+        for (int w = 0; w < Math.min(Math.max(1, concurrency), n); w++) worker[0].run();
+        return all;
+    }
+
+    /** Download one URL (http(s) or data:) to {@code target}. */
+    CompletableFuture<Path> download(String url, Path target) {
+        long start = System.nanoTime();
+        ResultCache cache = client.getResultCache();
+        boolean keep = cache != null && cache.keepsFiles();
+        byte[] cached = keep ? cache.getFile(url) : null;
+        CompletableFuture<Path> written;
+        if (cached != null) {
+            written = writeCached(cached, target);
+        } else {
+            written = transfer(url, target);
+            if (keep) written = written.thenApply(p -> {
+                try {
+                    byte[] bytes = readBounded(p, cache.getMaxBytes());
+                    if (bytes != null) cache.putFile(url, bytes);
+                } catch (IOException e) {
+                    // caching is best effort; the file is on disk
+                }
+                return p;
+            });
+        }
+        return written.thenApply(p -> {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            long bytes;
+            try {
+                bytes = Files.size(p);
+            } catch (IOException e) {
+                bytes = -1;
+            }
+            long size = bytes;
+            client.fire(l -> l.onDownloaded(url, p, size, millis));
+            return p;
+        });
+    }
+
+    /** The file's bytes, or null if it is larger than {@code max}; never allocates more than the file's size. */
+    private static byte[] readBounded(Path p, long max) throws IOException {
+        long size = Files.size(p);
+        if (size > Math.min(max, Integer.MAX_VALUE - 8)) return null;
+        try (InputStream in = Files.newInputStream(p)) {
+            byte[] bytes = in.readNBytes((int) size);
+            return bytes.length == size && in.read() < 0 ? bytes : null; // changed while read: don't cache
+        }
+    }
+
+    private static CompletableFuture<Path> writeCached(byte[] bytes, Path target) {
+        try {
+            Path parent = target.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            Path part = target.resolveSibling(target.getFileName() + ".part");
+            Files.write(part, bytes);
+            return CompletableFuture.completedFuture(moveIntoPlace(part, target));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<Path> transfer(String url, Path target) {
+        try {
+            Path parent = target.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            if (url.regionMatches(true, 0, "data:", 0, 5)) {
+                return CompletableFuture.completedFuture(decodeDataUrl(url, target));
+            }
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        Path src = source(part);
+        long have = 0;
+        String validator = null;
+        try {
+            if (Files.exists(part)) {
+                List<String> meta = Files.exists(src) ? Files.readAllLines(src, StandardCharsets.UTF_8) : List.of();
+                if (!meta.isEmpty() && meta.get(0).equals(url)) {
+                    have = Files.size(part);
+                    validator = meta.size() > 1 && !meta.get(1).isEmpty() ? meta.get(1) : null;
+                } else {
+                    Files.delete(part); // left by a download of some other URL
+                }
+            }
+        } catch (IOException e) {
+            have = 0;
+        }
+        HttpRequest.Builder req = HttpRequest.newBuilder().uri(URI.create(url)).timeout(client.requestTimeout()).GET();
+        if (have > 0) {
+            req.header("Range", "bytes=" + have + "-");
+            if (validator != null) req.header("If-Range", validator);
+        }
+        final long resumeFrom = have;
+        return client.http().sendAsync(req.build(), info -> {
+            int status = info.statusCode();
+            long[] range = contentRange(info.headers().firstValue("Content-Range").orElse(null));
+            if (status == 416 && resumeFrom > 0) {
+                boolean complete = range != null && range[2] == resumeFrom;
+                return HttpResponse.BodySubscribers.replacing(complete ? COMPLETE : RESTART);
+            }
+            if (status >= 400) return HttpResponse.BodySubscribers.replacing(-(long) status);
+            if (status == 206 && (range == null || range[0] != resumeFrom)) {
+                // only a resumed .part can be thrown away; a bogus 206 to a plain GET is an error
+                return HttpResponse.BodySubscribers.replacing(resumeFrom > 0 ? RESTART : -(long) status);
+            }
+            boolean append = status == 206 && resumeFrom > 0;
+            if (!append) writeSource(src, url, validator(info.headers()));
+            return HttpResponse.BodySubscribers.fromSubscriber(new FileWriter(part, append), FileWriter::written);
+        }).thenCompose(res -> {
+            long r = res.body();
+            if (r == RESTART) {
+                try {
+                    Files.deleteIfExists(part);
+                    Files.deleteIfExists(src);
+                } catch (IOException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+                return transfer(url, target);
+            }
+            if (r < RESTART) {
+                return CompletableFuture.failedFuture(
+                        new KontextHttpException("Failed to download result: HTTP " + res.statusCode(), res.statusCode()));
+            }
+            try {
+                return CompletableFuture.completedFuture(moveIntoPlace(part, target));
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    private static Path source(Path part) {
+        return part.resolveSibling(part.getFileName() + ".src");
+    }
+
+    /** Best effort: without it the .part is simply not resumed. */
+    private static void writeSource(Path src, String url, String validator) {
+        try {
+            Files.write(src, List.of(url, validator == null ? "" : validator), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(src);
+            } catch (IOException ignored) {
+                // the url check fails then, and the .part is discarded
+            }
+        }
+    }
+
+    /** Strong ETag, else Last-Modified; both are valid If-Range values. Weak ETags are not. */
+    private static String validator(HttpHeaders headers) {
+        String etag = headers.firstValue("ETag").orElse(null);
+        if (etag != null && !etag.startsWith("W/")) return etag;
+        return headers.firstValue("Last-Modified").orElse(null);
+    }
+
+    /** {@code bytes first-last/total} or {@code bytes *}{@code /total} as [first, last, total]; -1 for "*"; null if malformed. */
+    static long[] contentRange(String header) {
+        if (header == null || !header.regionMatches(true, 0, "bytes ", 0, 6)) return null;
+        String v = header.substring(6).trim();
+        int slash = v.indexOf('/');
+        if (slash < 0) return null;
+        try {
+            String range = v.substring(0, slash).trim();
+            String total = v.substring(slash + 1).trim();
+            long[] r = {-1, -1, total.equals("*") ? -1 : Long.parseLong(total)};
+            if (!range.equals("*")) {
+                int dash = range.indexOf('-');
+                if (dash < 0) return null;
+                r[0] = Long.parseLong(range.substring(0, dash).trim());
+                r[1] = Long.parseLong(range.substring(dash + 1).trim());
+            }
+            return r;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Path decodeDataUrl(String url, Path target) throws IOException {
+        int comma = url.indexOf(',');
+        if (comma < 0) throw new IOException("Malformed data URL");
+        String meta = url.substring(5, comma);
+        String payload = url.substring(comma + 1);
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        if (meta.toLowerCase(Locale.ROOT).endsWith(";base64")) {
+            try (InputStream in = Base64.getMimeDecoder().wrap(
+                    new java.io.ByteArrayInputStream(payload.getBytes(StandardCharsets.US_ASCII)))) {
+                Files.copy(in, part, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } else {
+            Files.write(part, URLDecoder.decode(payload, StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8));
+        }
+        return moveIntoPlace(part, target);
+    }
+
+    private static Path moveIntoPlace(Path part, Path target) throws IOException {
+        Path moved;
+        try {
+            moved = Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            moved = Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.deleteIfExists(source(part));
+        return moved;
+    }
+
+    /** File extension from a data: mime type or the URL path; ".png" when unknown. */
+    static String extension(String url) {
+        String lower = url.toLowerCase(Locale.ROOT);
+        if (lower.startsWith("data:")) {
+            int slash = lower.indexOf('/');
+            int end = lower.indexOf(';');
+            if (end < 0) end = lower.indexOf(',');
+            if (slash > 0 && end > slash) return "." + lower.substring(slash + 1, end).replace("jpeg", "jpg");
+            return ".bin";
+        }
+        String path;
+        try {
+            path = URI.create(url).getPath();
+        } catch (IllegalArgumentException e) {
+            path = null;
+        }
+        if (path != null) {
+            int dot = path.lastIndexOf('.');
+            if (dot > path.lastIndexOf('/') && path.length() - dot <= 5) return path.substring(dot).toLowerCase(Locale.ROOT);
+        }
+        return ".png";
+    }
+
+    /** Writes response buffers straight into a FileChannel (no intermediate byte[] copies). */
+    private static final class FileWriter implements Flow.Subscriber<List<ByteBuffer>> {
+        private final Path file;
+        private final boolean append;
+        private FileChannel channel;
+        private Flow.Subscription subscription;
+        private long written;
+
+        FileWriter(Path file, boolean append) {
+            this.file = file;
+            this.append = append;
+        }
+
+        long written() {
+            return written;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            try {
+                List<StandardOpenOption> opts = new ArrayList<>(List.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE));
+                opts.add(append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+                channel = FileChannel.open(file, opts.toArray(new StandardOpenOption[0]));
+            } catch (IOException e) {
+                s.cancel();
+                throw new UncheckedIOException(e);
+            }
+            subscription = s;
+            s.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            try {
+                for (ByteBuffer b : items) {
+                    while (b.hasRemaining()) written += channel.write(b);
+                }
+                subscription.request(1);
+            } catch (IOException e) {
+                subscription.cancel();
+                closeQuietly();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            closeQuietly(); // keep the .part file for resume
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                channel.force(false);
+            } catch (IOException ignored) {
+                // best effort; the rename below still happens
+            }
+            closeQuietly();
+        }
+
+        private void closeQuietly() {
+            try {
+                if (channel != null) channel.close();
+            } catch (IOException ignored) {
+                // nothing useful to do
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Expand / outpaint an image by a number of pixels per side ({@code flux-pro-1.0-expand}).
+ *
+ * <pre>
+ * KontextRequest r = ExpandRequest.builder()
+ *         .image("street.jpg")
+ *         .margins(0, 0, 256, 256)
+ *         .prompt("Extend the street")
+ *         .build();
+ * </pre>
+ *
+ * Margins are in input pixels and belong to the image, so they are always per request (and scaled
+ * along with it by an {@link ImagePreprocessor}).
+ */
+public final class ExpandRequest extends KontextRequest {
+
+    private final String image;
+    private final int top;
+    private final int bottom;
+    private final int left;
+    private final int right;
+
+    private ExpandRequest(Builder b) {
+        super(b);
+        this.image = b.image;
+        this.top = b.top;
+        this.bottom = b.bottom;
+        this.left = b.left;
+        this.right = b.right;
+    }
+
+    public static Builder builder() {
+        return new Builder(null);
+    }
+
+    /** Builder that starts from {@code template}'s endpoint and fields. */
+    public static Builder builder(KontextTemplate template) {
+        return new Builder(Objects.requireNonNull(template, "template"));
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    @Override
+    RequestBody body(Kontext4J client) throws IOException {
+        return client.buildBody(this);
+    }
+
+    public static final class Builder extends KontextRequest.Builder<ExpandRequest, Builder> {
+        private String image;
+        private int top;
+        private int bottom;
+        private int left;
+        private int right;
+
+        Builder(KontextTemplate template) {
+            super("expand", Kontext4J.EP_EXPAND, template);
+        }
+
+        /** Image to expand (path, URL or base64). */
+        public Builder image(String image) {
+            this.image = image;
+            return this;
+        }
+
+        /** Pixels to add on each side. */
+        public Builder margins(int top, int bottom, int left, int right) {
+            this.top = top;
+            this.bottom = bottom;
+            this.left = left;
+            this.right = right;
+            return this;
+        }
+
+        @Override
+        Builder self() {
+            return this;
+        }
+
+        @Override
+        boolean hasInputs() {
+            return image != null || top != 0 || bottom != 0 || left != 0 || right != 0;
+        }
+
+        @Override
+        public ExpandRequest build() {
+            return new ExpandRequest(this);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link BlobStore} that uploads with HTTP PUT to {@code <uploadBaseUrl>/<key>} and hands out
+ * {@code <publicBaseUrl>/<key>}: a public-read S3-compatible bucket (MinIO, R2, GCS XML API with a token),
+ * WebDAV, or a simple upload service.
+ *
+ * A HEAD on the upload URL skips keys that are already there. Credentials go in headers
+ * ({@link #setHeader}); AWS SigV4 signing isn't done here, plug an SDK-backed {@link BlobStore} in for that.
+ */
+public final class HttpBlobStore implements BlobStore {
+
+    private final HttpClient http;
+    private final String uploadBaseUrl;
+    private final String publicBaseUrl;
+    private final Map<String, String> headers = new ConcurrentHashMap<>();
+    private volatile Duration timeout = Duration.ofSeconds(60);
+
+    private final LongAdder uploads = new LongAdder();
+    private final LongAdder uploadedBytes = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    /** Upload and fetch through the same base URL. */
+    public HttpBlobStore(String baseUrl) {
+        this(baseUrl, baseUrl);
+    }
+
+    public HttpBlobStore(String uploadBaseUrl, String publicBaseUrl) {
+        this(HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(20)).build(), uploadBaseUrl, publicBaseUrl);
+    }
+
+    public HttpBlobStore(HttpClient http, String uploadBaseUrl, String publicBaseUrl) {
+        this.http = Objects.requireNonNull(http, "http");
+        this.uploadBaseUrl = stripSlash(Objects.requireNonNull(uploadBaseUrl, "uploadBaseUrl"));
+        this.publicBaseUrl = stripSlash(Objects.requireNonNull(publicBaseUrl, "publicBaseUrl"));
+        URI.create(this.uploadBaseUrl); // fail fast on a malformed URL
+        URI.create(this.publicBaseUrl);
+    }
+
+    /** Header sent with every HEAD/PUT, e.g. Authorization or x-amz-acl. */
+    public HttpBlobStore setHeader(String name, String value) {
+        headers.put(Objects.requireNonNull(name, "name"), Objects.requireNonNull(value, "value"));
+        return this;
+    }
+
+    public HttpBlobStore setTimeout(Duration timeout) {
+        this.timeout = Objects.requireNonNull(timeout, "timeout");
+        return this;
+    }
+
+    public long getUploads() { return uploads.sum(); }
+    public long getUploadedBytes() { return uploadedBytes.sum(); }
+    /** Puts skipped because the key was already stored. */
+    public long getSkipped() { return skipped.sum(); }
+
+    @Override
+    public String put(String key, byte[] data, String contentType) throws IOException {
+        URI target = URI.create(uploadBaseUrl + "/" + key);
+        try {
+            HttpResponse<Void> head = http.send(request(target).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            if (head.statusCode() / 100 == 2) {
+                skipped.increment();
+                return publicBaseUrl + "/" + key;
+            }
+            HttpResponse<String> put = http.send(request(target)
+                            .header("Content-Type", contentType)
+                            .PUT(HttpRequest.BodyPublishers.ofByteArray(data)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (put.statusCode() / 100 != 2) {
+                throw new KontextHttpException("Blob upload failed: HTTP " + put.statusCode() + " -> " + put.body(),
+                        put.statusCode());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted uploading " + key);
+        }
+        uploads.increment();
+        uploadedBytes.add(data.length);
+        return publicBaseUrl + "/" + key;
+    }
+
+    private HttpRequest.Builder request(URI uri) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(uri).timeout(timeout);
+        headers.forEach(b::header);
+        return b;
+    }
+
+    private static String stripSlash(String s) {
+        return s.endsWith("/") ? s.substring(0, s.length() - 1) : s;
+    }
+}
@@ -0,0 +1,411 @@
+package io.github.initio.kontext4j;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.w3c.dom.Node;
+
+/**
+ * Optional input stage that shrinks oversized images before upload (the API resizes them anyway).
+ *
+ * - Dimensions are read from the image header; images already within limits are sent untouched
+ * - Images ImageIO can't decode cleanly are sent untouched; a JPEG's EXIF orientation is applied before
+ *   resizing, since re-encoding drops the tag
+ * - Downscales to {@link #setMaxEdge max edge} and, when the call has an {@code aspectRatio}, to fit the
+ *   output frame of {@link #setFitAspectRatio that many megapixels}
+ * - Large reductions decode with subsampling, so a 24 MP JPEG is never fully decoded
+ * - Re-encodes in the source format (or {@link #setOutputFormat}); JPEG uses {@link #setQuality}
+ * - fill masks are resized to exactly the processed image size, nearest-neighbour, as PNG
+ * - expand margins are scaled along with the image
+ *
+ * A result is only used if it is smaller on the wire than the original.
+ * Bytes saved are reported per call ({@link KontextResult#getInputBytesSaved()}) and in total here.
+ */
+public final class ImagePreprocessor {
+
+    private volatile int maxEdge = 2048;
+    private volatile double fitMegapixels = 0;
+    private volatile float quality = 0.9f;
+    private volatile String outputFormat;
+
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder imagesResized = new LongAdder();
+
+    /** Longest edge in pixels after preprocessing (default 2048). */
+    public ImagePreprocessor setMaxEdge(int px) {
+        if (px < 1) throw new IllegalArgumentException("maxEdge must be >= 1");
+        this.maxEdge = px;
+        return this;
+    }
+
+    /** When the call has an aspectRatio, also fit inside that frame at {@code megapixels}; 0 disables (default). */
+    public ImagePreprocessor setFitAspectRatio(double megapixels) {
+        if (megapixels < 0) throw new IllegalArgumentException("megapixels must be >= 0");
+        this.fitMegapixels = megapixels;
+        return this;
+    }
+
+    /** JPEG quality, 0..1 (default 0.9). */
+    public ImagePreprocessor setQuality(float quality) {
+        if (quality < 0 || quality > 1) throw new IllegalArgumentException("quality must be in 0..1");
+        this.quality = quality;
+        return this;
+    }
+
+    /** "jpeg" or "png" for every resized image; null keeps the source format (default). */
+    public ImagePreprocessor setOutputFormat(String format) {
+        this.outputFormat = format == null ? null : format.toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    /** Upload (base64) bytes saved so far, all calls. */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    public long getImagesResized() {
+        return imagesResized.sum();
+    }
+
+    // ----------------------
+    // Processing
+    // ----------------------
+
+    /** Outcome for one image: the source to send, its size in pixels (-1 if unknown) and the applied scale. */
+    static final class Processed {
+        final ImageSource source;
+        final int width;
+        final int height;
+        final double scale;
+        final long bytesSaved;
+
+        Processed(ImageSource source, int width, int height, double scale, long bytesSaved) {
+            this.source = source;
+            this.width = width;
+            this.height = height;
+            this.scale = scale;
+            this.bytesSaved = bytesSaved;
+        }
+
+        boolean resized() {
+            return scale < 1;
+        }
+    }
+
+    /**
+     * Downscale {@code src} if it exceeds the limits. Unknown formats and images ImageIO can't decode cleanly
+     * (CMYK JPEGs, truncated files) pass through untouched; the EXIF orientation of a JPEG is applied first.
+     */
+    Processed process(ImageSource src, Kontext4J client, String aspectRatio) throws IOException {
+        try (CountingInputStream in = new CountingInputStream(src.openRaw(client));
+             ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = reader(iis);
+            if (reader == null) return new Processed(src, -1, -1, 1, 0);
+            try {
+                int w = reader.getWidth(0);
+                int h = reader.getHeight(0);
+                int orientation = isJpeg(reader.getFormatName()) ? orientation(reader) : 1;
+                if (orientation < 0) return new Processed(src, -1, -1, 1, 0); // can't tell which way is up
+                if (orientation >= 5) { // stored sideways
+                    int t = w;
+                    w = h;
+                    h = t;
+                }
+                double scale = targetScale(w, h, aspectRatio);
+                if (scale >= 1) return new Processed(src, w, h, 1, 0);
+
+                // subsample while decoding down to ~2x the target, then scale smoothly
+                int step = Math.max(1, (int) (1 / scale) / 2);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage decoded = decode(reader, param);
+                if (decoded == null) return new Processed(src, -1, -1, 1, 0);
+                decoded = orient(decoded, orientation);
+                int tw = Math.max(1, (int) Math.round(w * scale));
+                int th = Math.max(1, (int) Math.round(h * scale));
+                String format = outputFormat != null ? outputFormat
+                        : isJpeg(reader.getFormatName()) ? "jpeg" : "png";
+                byte[] out = encode(resize(decoded, tw, th, false, format), format);
+
+                long before = src.base64Length() >= 0 ? src.base64Length() : wireLength(in.drain());
+                long saved = before - wireLength(out.length);
+                if (saved <= 0) return new Processed(src, w, h, 1, 0);
+                bytesSaved.add(saved);
+                imagesResized.increment();
+                return new Processed(ImageSource.ofBytes(out), tw, th, (double) tw / w, saved);
+            } catch (IOException | RuntimeException e) {
+                return new Processed(src, -1, -1, 1, 0); // header unreadable; let the API judge the original
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Resize a mask to exactly {@code width}x{@code height} so it stays pixel-aligned with its processed image.
+     * Width -1 in the result means the mask couldn't be decoded and was left as is.
+     */
+    Processed fitMask(ImageSource mask, Kontext4J client, int width, int height) throws IOException {
+        try (CountingInputStream in = new CountingInputStream(mask.openRaw(client));
+             ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = reader(iis);
+            if (reader == null) return new Processed(mask, -1, -1, 1, 0);
+            try {
+                int w = reader.getWidth(0);
+                int h = reader.getHeight(0);
+                if (w == width && h == height) return new Processed(mask, w, h, 1, 0);
+                BufferedImage decoded = decode(reader, reader.getDefaultReadParam());
+                if (decoded == null) return new Processed(mask, -1, -1, 1, 0);
+                byte[] out = encode(resize(decoded, width, height, true, "png"), "png");
+                long before = mask.base64Length() >= 0 ? mask.base64Length() : wireLength(in.drain());
+                long saved = Math.max(0, before - wireLength(out.length)); // a PNG mask can grow
+                bytesSaved.add(saved);
+                return new Processed(ImageSource.ofBytes(out), width, height, (double) width / w, saved);
+            } catch (IOException | RuntimeException e) {
+                return new Processed(mask, -1, -1, 1, 0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Take back the stats of a resize the caller ended up not sending. */
+    void discard(Processed p) {
+        if (!p.resized()) return;
+        bytesSaved.add(-p.bytesSaved);
+        imagesResized.decrement();
+    }
+
+    /** Largest scale (<= 1) that satisfies maxEdge and, if enabled, the aspect-ratio frame. */
+    double targetScale(int w, int h, String aspectRatio) {
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(w, h));
+        double ratio = parseRatio(aspectRatio);
+        if (fitMegapixels > 0 && ratio > 0) {
+            double frameW = Math.sqrt(fitMegapixels * 1_000_000 * ratio);
+            double frameH = frameW / ratio;
+            scale = Math.min(scale, Math.min(frameW / w, frameH / h));
+        }
+        return scale;
+    }
+
+    private static double parseRatio(String aspectRatio) {
+        if (aspectRatio == null) return -1;
+        int colon = aspectRatio.indexOf(':');
+        if (colon < 0) return -1;
+        try {
+            double a = Double.parseDouble(aspectRatio.substring(0, colon).trim());
+            double b = Double.parseDouble(aspectRatio.substring(colon + 1).trim());
+            return a > 0 && b > 0 ? a / b : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static ImageReader reader(ImageInputStream iis) {
+        if (iis == null) return null;
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) return null;
+        ImageReader reader = readers.next();
+        reader.setInput(iis, true, true);
+        return reader;
+    }
+
+    /** Full decode, or null when the reader fails or warns (e.g. a truncated file decodes with a grey tail). */
+    private static BufferedImage decode(ImageReader reader, ImageReadParam param) {
+        boolean[] warned = new boolean[1];
+        reader.addIIOReadWarningListener((r, warning) -> warned[0] = true);
+        try {
+            BufferedImage img = reader.read(0, param);
+            return warned[0] ? null : img;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** EXIF Orientation (1-8) from a JPEG's APP1 segment; 1 when absent, -1 when the metadata is unreadable. */
+    private static int orientation(ImageReader reader) {
+        try {
+            IIOMetadata meta = reader.getImageMetadata(0);
+            if (meta == null) return 1;
+            Node root = meta.getAsTree("javax_imageio_jpeg_image_1.0");
+            for (Node n = root.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (!"markerSequence".equals(n.getNodeName())) continue;
+                for (Node m = n.getFirstChild(); m != null; m = m.getNextSibling()) {
+                    if (!(m instanceof IIOMetadataNode) || !"unknown".equals(m.getNodeName())) continue;
+                    Node tag = m.getAttributes().getNamedItem("MarkerTag");
+                    Object data = ((IIOMetadataNode) m).getUserObject();
+                    if (tag != null && "225".equals(tag.getNodeValue()) && data instanceof byte[]) {
+                        int o = exifOrientation((byte[]) data);
+                        if (o > 0) return o;
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+        return 1;
+    }
+
+    /** Orientation tag (0x0112) of IFD0 in an "Exif\0\0" + TIFF block, or -1. */
+    private static int exifOrientation(byte[] d) {
+        if (d.length < 14 || d[0] != 'E' || d[1] != 'x' || d[2] != 'i' || d[3] != 'f') return -1;
+        int tiff = 6;
+        boolean le = d[tiff] == 'I';
+        long ifd = tiff + u32(d, tiff + 4, le);
+        if (ifd + 2 > d.length) return -1;
+        int entries = u16(d, (int) ifd, le);
+        for (int i = 0; i < entries; i++) {
+            int e = (int) ifd + 2 + 12 * i;
+            if (e + 12 > d.length) return -1;
+            if (u16(d, e, le) == 0x0112) {
+                int o = u16(d, e + 8, le);
+                return o >= 1 && o <= 8 ? o : -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int u16(byte[] d, int i, boolean le) {
+        int a = d[i] & 0xFF, b = d[i + 1] & 0xFF;
+        return le ? a | b << 8 : a << 8 | b;
+    }
+
+    private static long u32(byte[] d, int i, boolean le) {
+        long hi = u16(d, le ? i + 2 : i, le), lo = u16(d, le ? i : i + 2, le);
+        return hi << 16 | lo;
+    }
+
+    /** Turn stored pixels upright per EXIF orientation, since re-encoding drops the tag. */
+    private static BufferedImage orient(BufferedImage src, int orientation) {
+        if (orientation <= 1 || orientation > 8) return src;
+        int w = src.getWidth(), h = src.getHeight();
+        AffineTransform t;
+        switch (orientation) {
+            case 2: t = new AffineTransform(-1, 0, 0, 1, w, 0); break;   // mirrored
+            case 3: t = new AffineTransform(-1, 0, 0, -1, w, h); break;  // 180
+            case 4: t = new AffineTransform(1, 0, 0, -1, 0, h); break;   // flipped
+            case 5: t = new AffineTransform(0, 1, 1, 0, 0, 0); break;    // transposed
+            case 6: t = new AffineTransform(0, 1, -1, 0, h, 0); break;   // 90 clockwise
+            case 7: t = new AffineTransform(0, -1, -1, 0, h, w); break;  // transversed
+            default: t = new AffineTransform(0, -1, 1, 0, 0, w); break;  // 90 counter-clockwise
+        }
+        boolean sideways = orientation >= 5;
+        BufferedImage dst = new BufferedImage(sideways ? h : w, sideways ? w : h,
+                src.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = dst.createGraphics();
+        try {
+            g.drawImage(src, t, null);
+        } finally {
+            g.dispose();
+        }
+        return dst;
+    }
+
+    private static boolean isJpeg(String formatName) {
+        String f = formatName.toLowerCase(Locale.ROOT);
+        return f.equals("jpeg") || f.equals("jpg");
+    }
+
+    private static BufferedImage resize(BufferedImage src, int w, int h, boolean nearest, String format) {
+        boolean alpha = src.getColorModel().hasAlpha() && !"jpeg".equals(format);
+        BufferedImage dst = new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = dst.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, nearest
+                    ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                    : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (!alpha) {
+                g.setColor(Color.WHITE); // flatten transparency for JPEG
+                g.fillRect(0, 0, w, h);
+            }
+            g.drawImage(src, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+        return dst;
+    }
+
+    private byte[] encode(BufferedImage img, String format) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) throw new IOException("No ImageIO writer for format: " + format);
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpeg".equals(format) && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+            }
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static long wireLength(long rawBytes) {
+        return 4 * ((rawBytes + 2) / 3);
+    }
+
+    /** Counts bytes pulled from the source, so non-file inputs can be sized without a second read. */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        /** Read whatever the decoder left and return the total size. */
+        long drain() throws IOException {
+            byte[] buf = new byte[16 * 1024];
+            while (read(buf, 0, buf.length) > 0) {
+                // counting only
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package io.github.initio.kontext4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * An image input that is base64-encoded while the request body is written, never held whole on heap.
+ *
+ * - {@link #ofPath(Path)} local file, read in chunks
+ * - {@link #ofUrl(String)} remote image, downloaded while the request is sent
+ * - {@link #ofStream(Supplier)} any byte stream (the supplier may be called again on resend)
+ * - {@link #ofBytes(byte[])} image bytes already in memory
+ * - {@link #ofBase64(String)} already-encoded data, sent as-is
+ */
+public abstract class ImageSource {
+
+    ImageSource() {}
+
+    public static ImageSource ofPath(Path path) {
+        return new PathSource(Objects.requireNonNull(path, "path"));
+    }
+
+    public static ImageSource ofUrl(String url) {
+        return new UrlSource(Objects.requireNonNull(url, "url"));
+    }
+
+    public static ImageSource ofStream(Supplier<? extends InputStream> stream) {
+        return new StreamSource(Objects.requireNonNull(stream, "stream"), -1);
+    }
+
+    public static ImageSource ofBytes(byte[] bytes) {
+        Objects.requireNonNull(bytes, "bytes");
+        return new StreamSource(() -> new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    public static ImageSource ofBase64(String base64) {
+        return new Base64Source(Objects.requireNonNull(base64, "base64"));
+    }
+
+    /** Heuristic: URL, existing file path, data URL or (otherwise) base64. Returns null for null/blank. */
+    public static ImageSource resolve(String input) {
+        if (input == null) return null;
+        String s = input.trim();
+        if (s.isEmpty()) return null;
+        // detect http(s)
+        if (s.startsWith("http://") || s.startsWith("https://")) return ofUrl(s);
+        // detect local file
+        Path p = Paths.get(s);
+        if (Files.exists(p)) return ofPath(p);
+        // if it looks like data:image/...;base64, extract
+        if (s.startsWith("data:") && s.contains("base64,")) {
+            return ofBase64(s.substring(s.indexOf("base64,") + 7));
+        }
+        // otherwise assume already base64
+        return ofBase64(s);
+    }
+
+    /** Raw (not yet encoded) image bytes. */
+    abstract InputStream openRaw(Kontext4J client) throws IOException;
+
+    /** Raw byte length if known without reading, else -1. */
+    abstract long rawLength();
+
+    /** Base64 (ASCII) bytes of the image. */
+    InputStream openBase64(Kontext4J client) throws IOException {
+        return new Base64InputStream(openRaw(client));
+    }
+
+    /** Length of {@link #openBase64} if known without reading, else -1. */
+    long base64Length() {
+        long n = rawLength();
+        return n < 0 ? -1 : 4 * ((n + 2) / 3);
+    }
+
+    // ----------------------
+    // Implementations
+    // ----------------------
+
+    static final class PathSource extends ImageSource {
+        final Path path;
+
+        PathSource(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        InputStream openRaw(Kontext4J client) throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        InputStream openBase64(Kontext4J client) throws IOException {
+            InputCache cache = client.getInputCache();
+            return cache != null ? cache.openPath(path) : super.openBase64(client);
+        }
+
+        @Override
+        long rawLength() {
+            try {
+                return Files.size(path);
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "ImageSource[path=" + path + "]";
+        }
+    }
+
+    static final class UrlSource extends ImageSource {
+        final String url;
+
+        UrlSource(String url) {
+            this.url = url;
+        }
+
+        @Override
+        InputStream openRaw(Kontext4J client) throws IOException {
+            return client.openUrl(url);
+        }
+
+        @Override
+        InputStream openBase64(Kontext4J client) throws IOException {
+            InputCache cache = client.getInputCache();
+            return cache != null ? cache.openUrl(url, client) : super.openBase64(client);
+        }
+
+        @Override
+        long rawLength() {
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            return "ImageSource[url=" + url + "]";
+        }
+    }
+
+    static final class StreamSource extends ImageSource {
+        final Supplier<? extends InputStream> stream;
+        final long length;
+
+        StreamSource(Supplier<? extends InputStream> stream, long length) {
+            this.stream = stream;
+            this.length = length;
+        }
+
+        @Override
+        InputStream openRaw(Kontext4J client) {
+            return stream.get();
+        }
+
+        @Override
+        long rawLength() {
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return "ImageSource[stream]";
+        }
+    }
+
+    static final class Base64Source extends ImageSource {
+        final String base64;
+
+        Base64Source(String base64) {
+            this.base64 = base64;
+        }
+
+        @Override
+        InputStream openRaw(Kontext4J client) {
+            return new ByteArrayInputStream(java.util.Base64.getMimeDecoder().decode(base64));
+        }
+
+        @Override
+        long rawLength() {
+            return -1;
+        }
+
+        @Override
+        InputStream openBase64(Kontext4J client) {
+            return new ByteArrayInputStream(base64.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        long base64Length() {
+            return base64.length();
+        }
+
+        @Override
+        public String toString() {
+            return "ImageSource[base64, " + base64.length() + " chars]";
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in cache of base64-encoded input images, so repeated calls with the same source photo or mask
+ * skip re-reading, re-downloading and re-encoding it.
+ *
+ * - Local files are keyed by absolute path + mtime + size (a changed file is a new entry)
+ * - URLs are keyed by URL and revalidated with If-None-Match / If-Modified-Since; only responses
+ *   carrying an ETag or Last-Modified are cached
+ * - Size-bounded LRU in memory; with {@link #withDiskTier} evicted entries spill to files that are
+ *   served memory-mapped. Spilling is best-effort: an entry that can't be written is dropped and counted
+ * - Entries larger than a quarter of the memory budget are streamed, never cached
+ *
+ * Enable with {@link Kontext4J#setInputCache(InputCache)}. Thread-safe.
+ */
+public final class InputCache {
+
+    private final long maxMemoryBytes;
+    private final long maxEntryBytes;
+    private long memoryBytes;
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+
+    private Path diskDir;
+    private long maxDiskBytes;
+    private long diskBytes;
+    private final LinkedHashMap<String, Entry> disk = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder spillErrors = new LongAdder();
+
+    /** @param maxMemoryBytes total size of encoded payloads kept on heap */
+    public InputCache(long maxMemoryBytes) {
+        if (maxMemoryBytes <= 0) throw new IllegalArgumentException("maxMemoryBytes must be > 0");
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxEntryBytes = maxMemoryBytes / 4;
+    }
+
+    /** Spill entries evicted from memory into {@code dir} (created if needed), up to {@code maxDiskBytes}. */
+    public synchronized InputCache withDiskTier(Path dir, long maxDiskBytes) throws IOException {
+        if (maxDiskBytes <= 0) throw new IllegalArgumentException("maxDiskBytes must be > 0");
+        this.diskDir = Files.createDirectories(dir);
+        this.maxDiskBytes = maxDiskBytes;
+        return this;
+    }
+
+    // ----------------------
+    // Stats
+    // ----------------------
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    /** URL hits confirmed by a 304 (subset of hits). */
+    public long getRevalidations() { return revalidations.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+    /** Evicted entries dropped because their spill file couldn't be written (disk full, permissions, ...). */
+    public long getSpillErrors() { return spillErrors.sum(); }
+    public synchronized long getMemoryBytes() { return memoryBytes; }
+    public synchronized long getDiskBytes() { return diskBytes; }
+
+    /** Drop every entry (and spilled file). */
+    public void clear() {
+        List<Entry> dropped;
+        synchronized (this) {
+            dropped = new ArrayList<>(disk.values());
+            memory.clear();
+            disk.clear();
+            memoryBytes = 0;
+            diskBytes = 0;
+        }
+        for (Entry e : dropped) deleteQuietly(e.file);
+    }
+
+    // ----------------------
+    // Lookups (used by ImageSource at send time)
+    // ----------------------
+
+    /** Base64 stream of a local file, from cache when its path, mtime and size match. */
+    InputStream openPath(Path path) throws IOException {
+        BasicFileAttributes a = Files.readAttributes(path, BasicFileAttributes.class);
+        String key = "file:" + path.toAbsolutePath().normalize() + '|' + a.lastModifiedTime().toMillis() + '|' + a.size();
+        ByteBuffer cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return new ByteBufferInputStream(cached);
+        }
+        misses.increment();
+        if (4 * ((a.size() + 2) / 3) > maxEntryBytes) return new Base64InputStream(Files.newInputStream(path));
+        byte[] encoded = Base64.getEncoder().encode(Files.readAllBytes(path));
+        store(key, new Entry(key, ByteBuffer.wrap(encoded), null, null));
+        return new ByteBufferInputStream(ByteBuffer.wrap(encoded));
+    }
+
+    /** Base64 stream of a remote image, revalidated against the cached ETag / Last-Modified. */
+    InputStream openUrl(String url, Kontext4J client) throws IOException {
+        String key = "url:" + url;
+        Entry e = peek(key);
+        List<String> headers = new ArrayList<>();
+        if (e != null && e.etag != null) { headers.add("If-None-Match"); headers.add(e.etag); }
+        if (e != null && e.lastModified != null) { headers.add("If-Modified-Since"); headers.add(e.lastModified); }
+
+        HttpResponse<InputStream> r = client.get(url, headers.toArray(new String[0]));
+        if (r.statusCode() == 304 && e != null) {
+            r.body().close();
+            ByteBuffer cached = lookup(key);
+            if (cached != null) {
+                hits.increment();
+                revalidations.increment();
+                return new ByteBufferInputStream(cached);
+            }
+            // evicted meanwhile: fetch again unconditionally
+            r = client.get(url);
+        }
+        if (r.statusCode() >= 400) {
+            r.body().close();
+            throw new IOException("Failed to fetch image URL: HTTP " + r.statusCode());
+        }
+        misses.increment();
+        String etag = r.headers().firstValue("ETag").orElse(null);
+        String lastModified = r.headers().firstValue("Last-Modified").orElse(null);
+        long length = r.headers().firstValueAsLong("Content-Length").orElse(-1);
+        if ((etag == null && lastModified == null) || length < 0 || 4 * ((length + 2) / 3) > maxEntryBytes) {
+            return new Base64InputStream(r.body());
+        }
+        byte[] encoded;
+        try (InputStream in = r.body()) {
+            encoded = Base64.getEncoder().encode(in.readAllBytes());
+        }
+        store(key, new Entry(key, ByteBuffer.wrap(encoded), etag, lastModified));
+        return new ByteBufferInputStream(ByteBuffer.wrap(encoded));
+    }
+
+    // ----------------------
+    // Tiers
+    // ----------------------
+
+    private synchronized Entry peek(String key) {
+        Entry e = memory.get(key);
+        return e != null ? e : disk.get(key);
+    }
+
+    /** Read-only view of the payload, from memory or a mapped spill file. */
+    private ByteBuffer lookup(String key) throws IOException {
+        Entry e;
+        synchronized (this) {
+            e = memory.get(key);
+            if (e != null) return e.data.asReadOnlyBuffer();
+            e = disk.get(key);
+            if (e == null) return null;
+        }
+        try (FileChannel ch = FileChannel.open(e.file, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException ex) {
+            synchronized (this) {
+                if (disk.remove(key) != null) diskBytes -= e.size;
+            }
+            return null;
+        }
+    }
+
+    private void store(String key, Entry entry) {
+        List<Entry> spilled = new ArrayList<>();
+        synchronized (this) {
+            Entry old = memory.put(key, entry);
+            if (old != null) memoryBytes -= old.size;
+            memoryBytes += entry.size;
+            Iterator<Entry> it = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+                Entry victim = it.next();
+                if (victim == entry) continue;
+                it.remove();
+                memoryBytes -= victim.size;
+                evictions.increment();
+                if (diskDir != null) spilled.add(victim);
+            }
+        }
+        for (Entry victim : spilled) spill(victim);
+    }
+
+    /** Move an evicted entry to disk; on failure it is simply gone, the request that evicted it is unaffected. */
+    private void spill(Entry e) {
+        byte[] name = RequestBody.sha256().digest(e.key.getBytes(StandardCharsets.UTF_8));
+        Path file = diskDir.resolve(RequestBody.hex(name) + ".b64");
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer b = e.data.asReadOnlyBuffer();
+            while (b.hasRemaining()) ch.write(b);
+        } catch (IOException ex) {
+            spillErrors.increment();
+            synchronized (this) {
+                Entry stale = disk.remove(e.key); // an older spill of the same key would be torn now
+                if (stale != null) diskBytes -= stale.size;
+            }
+            deleteQuietly(file);
+            return;
+        }
+        Entry onDisk = new Entry(e.key, null, e.etag, e.lastModified, file, e.size);
+        List<Entry> dropped = new ArrayList<>();
+        synchronized (this) {
+            Entry old = disk.put(e.key, onDisk);
+            if (old != null) diskBytes -= old.size;
+            diskBytes += onDisk.size;
+            Iterator<Entry> it = disk.values().iterator();
+            while (diskBytes > maxDiskBytes && it.hasNext()) {
+                Entry victim = it.next();
+                it.remove();
+                diskBytes -= victim.size;
+                evictions.increment();
+                if (!victim.file.equals(file)) dropped.add(victim);
+            }
+        }
+        for (Entry victim : dropped) deleteQuietly(victim.file);
+    }
+
+    private static void deleteQuietly(Path p) {
+        if (p == null) return;
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException ignored) {
+            // still mapped elsewhere (Windows) - left for the OS
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        final ByteBuffer data;   // heap tier
+        final Path file;         // disk tier
+        final long size;
+        final String etag;
+        final String lastModified;
+
+        Entry(String key, ByteBuffer data, String etag, String lastModified) {
+            this(key, data, etag, lastModified, null, data.remaining());
+        }
+
+        Entry(String key, ByteBuffer data, String etag, String lastModified, Path file, long size) {
+            this.key = key;
+            this.data = data;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.file = file;
+            this.size = size;
+        }
+    }
+
+    /** Streams a buffer without copying it. */
+    static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buf.hasRemaining()) return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+}
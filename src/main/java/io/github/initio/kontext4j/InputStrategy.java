@@ -0,0 +1,21 @@
+package io.github.initio.kontext4j;
+
+/**
+ * How input images reach the API: inline in the JSON body as base64, or as a URL the API fetches itself.
+ * Set per client with {@link Kontext4J#setInputStrategy} or per request with
+ * {@link KontextRequest.Builder#inputStrategy}.
+ *
+ * Only edit's {@code input_image..input_image_4} and generate's {@code reference_images} accept URLs;
+ * fill and expand images are always sent inline, whatever the strategy.
+ */
+public enum InputStrategy {
+    /** Send every input as base64: URLs are downloaded (through the {@link InputCache} if set), files read. */
+    INLINE,
+    /** Default. URLs are passed through where the endpoint accepts them; files and base64 are sent inline. */
+    PASSTHROUGH,
+    /**
+     * Like {@link #PASSTHROUGH}, and files/base64 are uploaded once to the client's {@link BlobStore} and sent
+     * as URLs (keyed by content, so a repeated input isn't uploaded again). Without a blob store, same as PASSTHROUGH.
+     */
+    STAGE
+}
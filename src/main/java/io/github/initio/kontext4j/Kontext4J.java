@@ -2,23 +2,44 @@ package io.github.initio.kontext4j;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 /**
@@ -27,32 +48,99 @@ import org.json.JSONObject;
  * - Supports edit, fill, generate, expand endpoints with full parameter coverage
  * - Fluent API (methods return this)
  * - Automatic input handling: local path, remote URL or base64 string
- * - Polling until status == "Ready" (configurable)
+ * - Polling until status == "Ready" (adaptive by default, pluggable via PollPolicy)
  * - Returns and stores multiple result URLs if present
+ * - Non-blocking variants (editAsync, fillAsync, ...) returning CompletableFuture&lt;KontextResult&gt;
  *
- * NOTE: This single-file implementation bundles helpers internally. You may split
- * into multiple files/classes later if you prefer.
+ * Thread-safety guarantee: once configured, one instance (and its HttpClient connection pool) may be
+ * shared by any number of threads, blocking or async. Every call produces its own immutable
+ * {@link KontextResult}; getUrl()/getUrls()/getLastRawResult()/download() read the last result
+ * produced by the calling thread. Configuration setters are safe to call at any time but apply to
+ * calls started afterwards.
+ *
+ * HTTP: pass a tuned client with {@link #setHttpClient}, or let init() build one from
+ * {@link #setExecutor}, {@link #setHttpVersion}, {@link #setConnectTimeout} and {@link #useVirtualThreads}.
  */
 public class Kontext4J {
 
+    /** Host the endpoint constants point to; see {@link #setBaseUrl}. */
+    public static final String DEFAULT_BASE_URL = "https://api.bfl.ai";
+
     // Endpoints (as of docs checked during creation)
     public static final String EP_KONTEXT_PRO = "https://api.bfl.ai/v1/flux-kontext-pro";      // edit + text-to-image
     public static final String EP_FILL        = "https://api.bfl.ai/v1/flux-1-fill";          // inpainting/fill
     public static final String EP_EXPAND      = "https://api.bfl.ai/v1/flux-pro-1.0-expand";  // expand/outpaint
 
     // HTTP
-    private HttpClient http;
-    private String apiKey;
-    private String currentModel = "edit";
+    private volatile HttpClient http;
+    private volatile String apiKey;
+    private volatile String currentModel = "edit";
+    private volatile String baseUrl = DEFAULT_BASE_URL;
+
+    // HttpClient configuration (ignored when a custom client is set)
+    private volatile HttpClient customHttp;
+    private volatile Executor executor;
+    private volatile HttpClient.Version httpVersion;
+    private volatile Duration connectTimeout = Duration.ofSeconds(20);
 
     // Polling / timeouts
-    private Duration requestTimeout = Duration.ofSeconds(60);
-    private long pollIntervalMillis = 1500;
-    private long maxWaitMillis = TimeUnit.MINUTES.toMillis(3);
+    private volatile Duration requestTimeout = Duration.ofSeconds(60);
+    private volatile PollPolicy pollPolicy = new AdaptivePollPolicy();
+    private volatile long maxWaitMillis = TimeUnit.MINUTES.toMillis(3);
+
+    // Owns all pending tasks and their poll timing; poll requests themselves go through HttpClient.sendAsync
+    private volatile PollScheduler pollScheduler = PollScheduler.shared();
+
+    // Task creation admission (opt-in) and batch defaults
+    private volatile RateLimiter rateLimiter;
+    private volatile int batchConcurrency = 8;
+
+    // Retries and per-endpoint circuit breakers
+    private volatile RetryPolicy createRetryPolicy = RetryPolicy.of(3, 500, 10_000);
+    private volatile RetryPolicy pollRetryPolicy = RetryPolicy.of(5, 250, 5_000);
+    private volatile int breakerFailureThreshold = 5;
+    private volatile long breakerOpenMillis = 30_000;
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
 
-    // Last results
-    private final List<String> lastResultUrls = new ArrayList<>();
-    private JSONObject lastRawResult;
+    // Webhook completion (opt-in)
+    private volatile WebhookReceiver webhookReceiver;
+    private volatile long webhookFallbackPollMillis = 30_000;
+
+    // Result downloads
+    private final Downloads downloads = new Downloads(this);
+    private volatile int downloadConcurrency = 4;
+
+    // Opt-in cache of encoded input images
+    private volatile InputCache inputCache;
+
+    // Opt-in downscaling of oversized inputs
+    private volatile ImagePreprocessor imagePreprocessor;
+
+    // Inline vs URL inputs; staged uploads by content key (and by file identity), so each is uploaded once
+    private volatile InputStrategy inputStrategy = InputStrategy.PASSTHROUGH;
+    private volatile BlobStore blobStore;
+    private volatile Executor inputExecutor;
+    private final Map<String, String> stagedUrls = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_STAGED_URLS;
+        }
+    });
+    private final LongAdder stagedUploads = new LongAdder();
+    private static final int MAX_STAGED_URLS = 4096;
+
+    // Opt-in persistence of accepted tasks; ids of tasks this client is polling right now
+    private volatile TaskJournal taskJournal;
+    private final Map<String, Boolean> activeTaskIds = new ConcurrentHashMap<>();
+
+    // Opt-in dedup of deterministic requests
+    private volatile ResultCache resultCache;
+
+    // Lifecycle observers (metrics, tracing)
+    private final List<KontextListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Last result of each calling thread (results themselves are immutable)
+    private final ThreadLocal<KontextResult> lastResult = new ThreadLocal<>();
 
     // Constructor
     public Kontext4J() {}
@@ -62,12 +150,81 @@ public class Kontext4J {
     // ----------------------
     public Kontext4J init(String apiKey) {
         this.apiKey = Objects.requireNonNull(apiKey, "apiKey");
-        this.http = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(20))
-                .build();
+        this.http = buildClient();
         return this;
     }
 
+    /** Use this client as-is (its executor, version, pool and proxy settings). null goes back to a built client. */
+    public Kontext4J setHttpClient(HttpClient client) {
+        this.customHttp = client;
+        return rebuildClient();
+    }
+
+    /** Executor for the built HttpClient's async work and completions. */
+    public Kontext4J setExecutor(Executor executor) {
+        this.executor = executor;
+        return rebuildClient();
+    }
+
+    public Kontext4J setHttpVersion(HttpClient.Version version) {
+        this.httpVersion = version;
+        return rebuildClient();
+    }
+
+    public Kontext4J setConnectTimeout(Duration d) {
+        this.connectTimeout = Objects.requireNonNull(d, "connectTimeout");
+        return rebuildClient();
+    }
+
+    /**
+     * Run HTTP work on virtual threads (JDK 21+), so blocking edit/fill calls fanned out over many
+     * threads stay cheap. On JDK 17-20 falls back to a cached pool of daemon platform threads.
+     */
+    public Kontext4J useVirtualThreads() {
+        return setExecutor(virtualThreadExecutor());
+    }
+
+    /** A virtual-thread-per-task executor on JDK 21+, else a cached daemon thread pool. */
+    public static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "kontext4j-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /** True if virtual threads are available on this JVM. */
+    public static boolean virtualThreadsSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /** The HttpClient in use (null before init). */
+    public HttpClient getHttpClient() {
+        return http;
+    }
+
+    private Kontext4J rebuildClient() {
+        if (apiKey != null) this.http = buildClient();
+        return this;
+    }
+
+    private HttpClient buildClient() {
+        if (customHttp != null) return customHttp;
+        HttpClient.Builder b = HttpClient.newBuilder().connectTimeout(connectTimeout);
+        if (executor != null) b.executor(executor);
+        if (httpVersion != null) b.version(httpVersion);
+        return b.build();
+    }
+
     public Kontext4J model(String modelName) {
         if (modelName == null) return this;
         String m = modelName.toLowerCase();
@@ -81,9 +238,97 @@ public class Kontext4J {
         return this;
     }
 
+    /**
+     * Send requests for {@code https://api.bfl.ai/...} endpoints (the EP_* constants) to another host instead,
+     * e.g. a regional API host or a local mock. Polling always follows the polling_url the API returns.
+     */
+    public Kontext4J setBaseUrl(String baseUrl) {
+        String b = Objects.requireNonNull(baseUrl, "baseUrl").trim();
+        while (b.endsWith("/")) b = b.substring(0, b.length() - 1);
+        URI.create(b); // fail fast on a malformed URL
+        this.baseUrl = b;
+        return this;
+    }
+    public String getBaseUrl() { return baseUrl; }
+
     public Kontext4J setRequestTimeout(Duration d) { this.requestTimeout = d; return this; }
-    public Kontext4J setPollIntervalMillis(long ms) { this.pollIntervalMillis = ms; return this; }
+    /** Poll at a fixed interval instead of the default {@link AdaptivePollPolicy}. */
+    public Kontext4J setPollIntervalMillis(long ms) { this.pollPolicy = PollPolicy.fixed(ms); return this; }
+    public Kontext4J setPollPolicy(PollPolicy p) { this.pollPolicy = Objects.requireNonNull(p, "pollPolicy"); return this; }
     public Kontext4J setMaxWaitMillis(long ms) { this.maxWaitMillis = ms; return this; }
+    public Kontext4J setPollScheduler(PollScheduler s) { this.pollScheduler = Objects.requireNonNull(s, "pollScheduler"); return this; }
+    public PollScheduler getPollScheduler() { return pollScheduler; }
+    /** Token bucket applied to every task creation (single calls and batches); null disables (default). */
+    public Kontext4J setRateLimiter(RateLimiter r) { this.rateLimiter = r; return this; }
+    public RateLimiter getRateLimiter() { return rateLimiter; }
+    /** Default max tasks in flight for {@link #submitBatch(List)}. */
+    public Kontext4J setBatchConcurrency(int n) {
+        if (n < 1) throw new IllegalArgumentException("batch concurrency must be >= 1");
+        this.batchConcurrency = n;
+        return this;
+    }
+    /**
+     * Retries for task creation. Only used when resending can't create a duplicate: the request never
+     * reached the server, it answered 429/503, or (for any transport error / 5xx) the body has a seed.
+     */
+    public Kontext4J setCreateRetryPolicy(RetryPolicy p) { this.createRetryPolicy = Objects.requireNonNull(p, "createRetryPolicy"); return this; }
+    /** Retries for a single poll (always safe): transport errors, 429 and 5xx. */
+    public Kontext4J setPollRetryPolicy(RetryPolicy p) { this.pollRetryPolicy = Objects.requireNonNull(p, "pollRetryPolicy"); return this; }
+    /** Open an endpoint's circuit after {@code failureThreshold} consecutive failures, for {@code openMillis}. 0 disables. */
+    public Kontext4J setCircuitBreaker(int failureThreshold, long openMillis) {
+        this.breakerFailureThreshold = failureThreshold;
+        this.breakerOpenMillis = openMillis;
+        this.circuitBreakers.clear();
+        return this;
+    }
+    /** Breaker state per endpoint, for monitoring. */
+    public Map<String, CircuitBreaker> getCircuitBreakers() { return Collections.unmodifiableMap(circuitBreakers); }
+    /**
+     * Complete tasks from webhook callbacks instead of polling. Calls without their own webhookUrl get
+     * the receiver's callback URL and secret; they are still polled every {@link #setWebhookFallbackPollMillis}
+     * in case a callback is lost. null disables (default).
+     */
+    public Kontext4J setWebhookReceiver(WebhookReceiver r) { this.webhookReceiver = r; return this; }
+    public WebhookReceiver getWebhookReceiver() { return webhookReceiver; }
+    public Kontext4J setWebhookFallbackPollMillis(long ms) { this.webhookFallbackPollMillis = ms; return this; }
+    /** Max parallel downloads for {@link #downloadAll(Path)}. */
+    public Kontext4J setDownloadConcurrency(int n) {
+        if (n < 1) throw new IllegalArgumentException("download concurrency must be >= 1");
+        this.downloadConcurrency = n;
+        return this;
+    }
+    /** Cache encoded input images across calls; null disables (default). */
+    public Kontext4J setInputCache(InputCache c) { this.inputCache = c; return this; }
+    public InputCache getInputCache() { return inputCache; }
+    /** Downscale/re-encode oversized input images before upload; null disables (default). */
+    public Kontext4J setImagePreprocessor(ImagePreprocessor p) { this.imagePreprocessor = p; return this; }
+    public ImagePreprocessor getImagePreprocessor() { return imagePreprocessor; }
+    /** Default for requests that don't set one (see {@link InputStrategy}); PASSTHROUGH by default. */
+    public Kontext4J setInputStrategy(InputStrategy s) { this.inputStrategy = Objects.requireNonNull(s, "inputStrategy"); return this; }
+    public InputStrategy getInputStrategy() { return inputStrategy; }
+    /** Where {@link InputStrategy#STAGE} uploads inputs; null disables staging (default). */
+    public Kontext4J setBlobStore(BlobStore s) { this.blobStore = s; stagedUrls.clear(); return this; }
+    /**
+     * Where {@link #submit} prepares inputs that block (staging uploads, preprocessor decodes, hashing images for
+     * the result cache or task journal), so the caller's thread never does; default a shared pool (virtual threads
+     * on JDK 21+).
+     */
+    public Kontext4J setInputExecutor(Executor e) { this.inputExecutor = e; return this; }
+    public BlobStore getBlobStore() { return blobStore; }
+    /** Inputs uploaded to the blob store (repeats served from memory are not counted). */
+    public long getStagedUploads() { return stagedUploads.sum(); }
+    /**
+     * Journal accepted tasks (polling_url, status, result) so they can be picked up again with
+     * {@link #resumePending()} after a restart. null disables (default).
+     */
+    public Kontext4J setTaskJournal(TaskJournal j) { this.taskJournal = j; return this; }
+    public TaskJournal getTaskJournal() { return taskJournal; }
+    /** Reuse results (and optionally downloaded files) of identical seeded requests; null disables (default). */
+    public Kontext4J setResultCache(ResultCache c) { this.resultCache = c; return this; }
+    public ResultCache getResultCache() { return resultCache; }
+    /** Observe task creation, polls, completion/failure and downloads, e.g. with a {@link LatencyRecorder}. */
+    public Kontext4J addListener(KontextListener l) { listeners.add(Objects.requireNonNull(l, "listener")); return this; }
+    public Kontext4J removeListener(KontextListener l) { listeners.remove(l); return this; }
 
     // ----------------------
     // Public API - full coverage methods
@@ -110,35 +355,11 @@ public class Kontext4J {
             String webhookSecret,
             Integer numOutputs
     ) throws IOException, InterruptedException {
-        ensureInit();
-        this.currentModel = "edit";
-
-        JSONObject body = new JSONObject();
-        putIfNotNull(body, "prompt", prompt);
-        putIfNotNull(body, "negative_prompt", negativePrompt);
-        putIfNotNull(body, "aspect_ratio", aspectRatio);
-        putIfNotNull(body, "seed", seed);
-        putIfNotNull(body, "steps", steps);
-        putIfNotNull(body, "guidance", guidance);
-        putIfNotNull(body, "prompt_upsampling", promptUpsampling);
-        putIfNotNull(body, "safety_tolerance", safetyTolerance);
-        putIfNotNull(body, "output_format", outputFormat);
-        putIfNotNull(body, "webhook_url", webhookUrl);
-        putIfNotNull(body, "webhook_secret", webhookSecret);
-        putIfNotNull(body, "num_outputs", numOutputs);
-
-        // Multiple input images
-        putIfNotNull(body, "input_image", tryEncodeRef(inputImage1));
-        putIfNotNull(body, "input_image_2", tryEncodeRef(inputImage2));
-        putIfNotNull(body, "input_image_3", tryEncodeRef(inputImage3));
-        putIfNotNull(body, "input_image_4", tryEncodeRef(inputImage4));
-
-        JSONObject finalJson = executeTask(EP_KONTEXT_PRO, body);
-        extractAndStoreUrls(finalJson);
-        return this;
+        return execute(KontextRequest.edit(inputImage1, inputImage2, inputImage3, inputImage4, prompt,
+                negativePrompt, aspectRatio, seed, steps, guidance, promptUpsampling, safetyTolerance, outputFormat,
+                webhookUrl, webhookSecret, numOutputs));
     }
 
-
     /**
      * Fill / inpaint (supports mask and mask_mode).
      */
@@ -159,30 +380,9 @@ public class Kontext4J {
             String webhookSecret,
             Integer numOutputs
     ) throws IOException, InterruptedException {
-        ensureInit();
-        this.currentModel = "fill";
-
-        String b64 = tryEncodeInput(inputImage);
-        JSONObject body = new JSONObject();
-        putIfNotNull(body, "prompt", prompt);
-        putIfNotNull(body, "negative_prompt", negativePrompt);
-        putIfNotNull(body, "image", b64); // fill endpoint uses "image"
-        putIfNotNull(body, "mask", encodeMaskFlexible(maskImage));
-        putIfNotNull(body, "mask_mode", maskMode);
-        putIfNotNull(body, "aspect_ratio", aspectRatio);
-        putIfNotNull(body, "seed", seed);
-        putIfNotNull(body, "steps", steps);
-        putIfNotNull(body, "guidance", guidance);
-        putIfNotNull(body, "prompt_upsampling", promptUpsampling);
-        putIfNotNull(body, "safety_tolerance", safetyTolerance);
-        putIfNotNull(body, "output_format", outputFormat);
-        putIfNotNull(body, "webhook_url", webhookUrl);
-        putIfNotNull(body, "webhook_secret", webhookSecret);
-        putIfNotNull(body, "num_outputs", numOutputs);
-
-        JSONObject finalJson = executeTask(EP_FILL, body);
-        extractAndStoreUrls(finalJson);
-        return this;
+        return execute(KontextRequest.fill(inputImage, maskImage, maskMode, prompt, negativePrompt, aspectRatio,
+                seed, steps, guidance, promptUpsampling, safetyTolerance, outputFormat,
+                webhookUrl, webhookSecret, numOutputs));
     }
 
     /**
@@ -206,36 +406,9 @@ public class Kontext4J {
             Object extraLoraScale,
             Object extraReference
     ) throws IOException, InterruptedException {
-        ensureInit();
-        this.currentModel = "generate";
-
-        JSONObject body = new JSONObject();
-        putIfNotNull(body, "prompt", prompt);
-        putIfNotNull(body, "negative_prompt", negativePrompt);
-        putIfNotNull(body, "aspect_ratio", aspectRatio);
-        putIfNotNull(body, "seed", seed);
-        putIfNotNull(body, "steps", steps);
-        putIfNotNull(body, "guidance", guidance);
-        putIfNotNull(body, "prompt_upsampling", promptUpsampling);
-        putIfNotNull(body, "safety_tolerance", safetyTolerance);
-        putIfNotNull(body, "output_format", outputFormat);
-        putIfNotNull(body, "webhook_url", webhookUrl);
-        putIfNotNull(body, "webhook_secret", webhookSecret);
-        putIfNotNull(body, "num_outputs", numOutputs);
-        putIfNotNull(body, "extra_lora_scale", extraLoraScale);
-        putIfNotNull(body, "extra_reference", extraReference);
-
-        if (referenceImages != null && !referenceImages.isEmpty()) {
-            JSONArray refs = new JSONArray();
-            for (String r : referenceImages) {
-                refs.put(tryEncodeRef(r));
-            }
-            body.put("reference_images", refs);
-        }
-
-        JSONObject finalJson = executeTask(EP_KONTEXT_PRO, body);
-        extractAndStoreUrls(finalJson);
-        return this;
+        return execute(KontextRequest.generate(prompt, negativePrompt, aspectRatio, seed, steps, guidance,
+                promptUpsampling, safetyTolerance, outputFormat, webhookUrl, webhookSecret, numOutputs,
+                referenceImages, extraLoraScale, extraReference));
     }
 
     /**
@@ -256,47 +429,281 @@ public class Kontext4J {
             String webhookSecret,
             Integer numOutputs
     ) throws IOException, InterruptedException {
+        return execute(KontextRequest.expand(inputImage, top, bottom, left, right, prompt, negativePrompt,
+                seed, steps, guidance, promptUpsampling, safetyTolerance, outputFormat,
+                webhookUrl, webhookSecret, numOutputs));
+    }
+
+    /**
+     * Run one prepared request (e.g. from {@link EditRequest#builder()}) and block until it finishes.
+     * The result is available through {@link #getUrl()}, {@link #getLastResult()}, ...
+     */
+    public Kontext4J execute(KontextRequest request) throws IOException, InterruptedException {
         ensureInit();
-        this.currentModel = "expand";
+        this.currentModel = request.getModel();
 
-        String b64 = tryEncodeInput(inputImage);
-        JSONObject body = new JSONObject();
-        putIfNotNull(body, "image", b64);
-        putIfNotNull(body, "top", top);
-        putIfNotNull(body, "bottom", bottom);
-        putIfNotNull(body, "left", left);
-        putIfNotNull(body, "right", right);
-        putIfNotNull(body, "prompt", prompt);
-        putIfNotNull(body, "negative_prompt", negativePrompt);
-        putIfNotNull(body, "seed", seed);
-        putIfNotNull(body, "steps", steps);
-        putIfNotNull(body, "guidance", guidance);
-        putIfNotNull(body, "prompt_upsampling", promptUpsampling);
-        putIfNotNull(body, "safety_tolerance", safetyTolerance);
-        putIfNotNull(body, "output_format", outputFormat);
-        putIfNotNull(body, "webhook_url", webhookUrl);
-        putIfNotNull(body, "webhook_secret", webhookSecret);
-        putIfNotNull(body, "num_outputs", numOutputs);
-
-        JSONObject finalJson = executeTask(EP_EXPAND, body);
-        extractAndStoreUrls(finalJson);
+        RequestBody body = request.body(this);
+        lastResult.set(executeTask(request, body));
         return this;
     }
 
+    // ----------------------
+    // Async API - same parameters, non-blocking
+    // ----------------------
+    // Input images are streamed and encoded while the POST is sent; creation and polling never block a thread.
+
+    /** Non-blocking {@link #edit}. */
+    public CompletableFuture<KontextResult> editAsync(
+            String inputImage1,
+            String inputImage2,
+            String inputImage3,
+            String inputImage4,
+            String prompt,
+            String negativePrompt,
+            String aspectRatio,
+            Integer seed,
+            Integer steps,
+            Double guidance,
+            Boolean promptUpsampling,
+            Integer safetyTolerance,
+            String outputFormat,
+            String webhookUrl,
+            String webhookSecret,
+            Integer numOutputs
+    ) {
+        return submit(KontextRequest.edit(inputImage1, inputImage2, inputImage3, inputImage4,
+                prompt, negativePrompt, aspectRatio, seed, steps, guidance, promptUpsampling, safetyTolerance,
+                outputFormat, webhookUrl, webhookSecret, numOutputs));
+    }
+
+    /** Non-blocking {@link #fill}. */
+    public CompletableFuture<KontextResult> fillAsync(
+            String inputImage,
+            String maskImage,
+            String maskMode,
+            String prompt,
+            String negativePrompt,
+            String aspectRatio,
+            Integer seed,
+            Integer steps,
+            Double guidance,
+            Boolean promptUpsampling,
+            Integer safetyTolerance,
+            String outputFormat,
+            String webhookUrl,
+            String webhookSecret,
+            Integer numOutputs
+    ) {
+        return submit(KontextRequest.fill(inputImage, maskImage, maskMode, prompt, negativePrompt,
+                aspectRatio, seed, steps, guidance, promptUpsampling, safetyTolerance, outputFormat,
+                webhookUrl, webhookSecret, numOutputs));
+    }
+
+    /** Non-blocking {@link #generate}. */
+    public CompletableFuture<KontextResult> generateAsync(
+            String prompt,
+            String negativePrompt,
+            String aspectRatio,
+            Integer seed,
+            Integer steps,
+            Double guidance,
+            Boolean promptUpsampling,
+            Integer safetyTolerance,
+            String outputFormat,
+            String webhookUrl,
+            String webhookSecret,
+            Integer numOutputs,
+            List<String> referenceImages,
+            Object extraLoraScale,
+            Object extraReference
+    ) {
+        return submit(KontextRequest.generate(prompt, negativePrompt, aspectRatio, seed, steps,
+                guidance, promptUpsampling, safetyTolerance, outputFormat, webhookUrl, webhookSecret, numOutputs,
+                referenceImages, extraLoraScale, extraReference));
+    }
+
+    /** Non-blocking {@link #expand}. */
+    public CompletableFuture<KontextResult> expandAsync(
+            String inputImage,
+            int top, int bottom, int left, int right,
+            String prompt,
+            String negativePrompt,
+            Integer seed,
+            Integer steps,
+            Double guidance,
+            Boolean promptUpsampling,
+            Integer safetyTolerance,
+            String outputFormat,
+            String webhookUrl,
+            String webhookSecret,
+            Integer numOutputs
+    ) {
+        return submit(KontextRequest.expand(inputImage, top, bottom, left, right, prompt,
+                negativePrompt, seed, steps, guidance, promptUpsampling, safetyTolerance, outputFormat,
+                webhookUrl, webhookSecret, numOutputs));
+    }
+
+    /** Run one prepared request without blocking. */
+    public CompletableFuture<KontextResult> submit(KontextRequest request) {
+        return submit(request, new Submission(request.getDeadline(), false, null));
+    }
+
+    /**
+     * {@link #submit(KontextRequest)} with per-call settings from a pool or batch. Bodies that stage or preprocess
+     * inputs, or whose images must be hashed, are prepared on the input executor; cancelling the returned future
+     * cancels the task wherever it got to.
+     */
+    CompletableFuture<KontextResult> submit(KontextRequest request, Submission submission) {
+        try {
+            ensureInit();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (blocksOnInputs(request)) return prepareAsync(request, () -> body(request), submission);
+        RequestBody body;
+        try {
+            body = body(request);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (hashesInputs(body)) return prepareAsync(request, () -> body, submission);
+        return executeTaskAsync(request, body, submission);
+    }
+
+    /** Build the body (and hash it, if needed) on the input executor, then run the task. */
+    private CompletableFuture<KontextResult> prepareAsync(KontextRequest request, BodySupplier supplier,
+                                                          Submission submission) {
+        CompletableFuture<KontextResult> out = new CompletableFuture<>();
+        Executor exec = inputExecutor;
+        try {
+            (exec != null ? exec : InputPool.EXECUTOR).execute(() -> {
+                if (out.isDone()) return;
+                RequestBody body;
+                try {
+                    body = supplier.get();
+                } catch (Exception e) {
+                    out.completeExceptionally(e);
+                    return;
+                }
+                if (out.isDone()) return; // cancelled while its inputs were prepared: never sent
+                CompletableFuture<KontextResult> task = executeTaskAsync(request, body, submission);
+                out.whenComplete((r, e) -> {
+                    if (out.isCancelled()) task.cancel(true);
+                    else if (e != null) task.completeExceptionally(e);
+                });
+                task.whenComplete((r, e) -> {
+                    if (e != null) out.completeExceptionally(unwrap(e));
+                    else out.complete(r);
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            out.completeExceptionally(e);
+        }
+        return out;
+    }
+
+    private RequestBody body(KontextRequest request) throws IOException, InterruptedException {
+        try {
+            return request.body(this);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /** Staging uploads and re-encodes inputs; plain bodies only open their inputs at send time. */
+    private boolean blocksOnInputs(KontextRequest request) {
+        return imagePreprocessor != null || blobStore != null && strategy(request) == InputStrategy.STAGE;
+    }
+
+    /** The result cache and the journal key a body by its content hash, which reads every image file or stream in it. */
+    private boolean hashesInputs(RequestBody body) {
+        ResultCache cache = resultCache;
+        return (cache != null && cache.accepts(body) || taskJournal != null) && body.hashReadsImages();
+    }
+
+    @FunctionalInterface
+    private interface BodySupplier {
+        RequestBody get() throws IOException, InterruptedException;
+    }
+
+    /**
+     * How one submit runs: its deadline (null for none), whether a {@link KontextBatch} schedules it (a 429 on
+     * creation then goes straight back to the batch, which requeues it and slows down, instead of being retried
+     * here first) and a hook run once the API accepted the task (may be null).
+     */
+    static final class Submission {
+        final Duration deadline;
+        final boolean batched;
+        final Runnable onCreated;
+
+        Submission(Duration deadline, boolean batched, Runnable onCreated) {
+            this.deadline = deadline;
+            this.batched = batched;
+            this.onCreated = onCreated;
+        }
+    }
+
+    /** Default input executor, created on first use. */
+    private static final class InputPool {
+        static final Executor EXECUTOR = virtualThreadExecutor();
+    }
+
+    /** Request deadlines; a finished task's timer is removed at once, not when it would have fired. */
+    private static final class DeadlineTimer {
+        static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "kontext4j-deadline");
+            t.setDaemon(true);
+            return t;
+        });
+
+        static {
+            EXECUTOR.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    // ----------------------
+    // Batch API
+    // ----------------------
+
+    /**
+     * Run many requests with at most {@link #setBatchConcurrency} in flight. Returns immediately;
+     * iterate the batch to get results in completion order, each with its own error if it failed.
+     */
+    public KontextBatch submitBatch(List<KontextRequest> requests) {
+        return submitBatch(requests, batchConcurrency);
+    }
+
+    public KontextBatch submitBatch(List<KontextRequest> requests, int maxConcurrency) {
+        ensureInit();
+        KontextBatch batch = new KontextBatch(r -> submit(r, new Submission(r.getDeadline(), true, null)),
+                requests, maxConcurrency);
+        batch.start();
+        return batch;
+    }
+
     // ----------------------
     // Result helpers
     // ----------------------
+    // These read the last result of the calling thread; async callers use the returned KontextResult.
     public List<String> getUrls() {
-        return Collections.unmodifiableList(lastResultUrls);
+        KontextResult r = lastResult.get();
+        return r == null ? Collections.emptyList() : r.getUrls();
     }
 
     public String getUrl() {
-        if (lastResultUrls.isEmpty()) return null;
-        return lastResultUrls.get(lastResultUrls.size()-1);
+        KontextResult r = lastResult.get();
+        return r == null ? null : r.getUrl();
     }
 
     public JSONObject getLastRawResult() {
-        return lastRawResult;
+        KontextResult r = lastResult.get();
+        return r == null ? null : r.getRaw();
+    }
+
+    /** Last result produced by the calling thread, or null. */
+    public KontextResult getLastResult() {
+        return lastResult.get();
     }
 
     /** Download last image (index -1 means last) */
@@ -306,15 +713,120 @@ public class Kontext4J {
 
     /** Download a particular index from the last results. index may be negative to count from the end. */
     public void downloadIndex(Path outputPath, int index) throws IOException, InterruptedException {
-        if (lastResultUrls.isEmpty()) {
+        downloadIndex(lastResult.get(), outputPath, index);
+    }
+
+    /**
+     * Download every result URL of the calling thread's last result into {@code dir}, up to
+     * {@link #setDownloadConcurrency} at a time. Files are named {@code <taskId>_<index>.<ext>}.
+     */
+    public List<Path> downloadAll(Path dir) throws IOException, InterruptedException {
+        return await(downloadAllAsync(lastResult.get(), dir));
+    }
+
+    /** Non-blocking download of every URL of {@code result}; paths are in result order. */
+    public CompletableFuture<List<Path>> downloadAllAsync(KontextResult result, Path dir) {
+        if (result == null || result.getUrls().isEmpty()) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("No result available. Call edit/fill/generate/expand first."));
+        }
+        String prefix = result.getTaskId() != null ? result.getTaskId().replaceAll("[^A-Za-z0-9._-]", "_") : "result";
+        return downloads.downloadAll(result.getUrls(), prefix, dir, downloadConcurrency);
+    }
+
+    /** Download a particular index from the given result. index may be negative to count from the end. */
+    public void downloadIndex(KontextResult result, Path outputPath, int index) throws IOException, InterruptedException {
+        if (result == null || result.getUrls().isEmpty()) {
             throw new IllegalStateException("No result available. Call edit/fill/generate/expand first.");
         }
-        int idx = index < 0 ? (lastResultUrls.size() + index) : index;
-        if (idx < 0 || idx >= lastResultUrls.size()) throw new IndexOutOfBoundsException("Invalid result index: " + index);
-        String url = lastResultUrls.get(idx);
+        List<String> urls = result.getUrls();
+        int idx = index < 0 ? (urls.size() + index) : index;
+        if (idx < 0 || idx >= urls.size()) throw new IndexOutOfBoundsException("Invalid result index: " + index);
+        String url = urls.get(idx);
         downloadFromUrl(url, outputPath);
     }
 
+    // ----------------------
+    // Request bodies
+    // ----------------------
+    RequestBody buildBody(EditRequest r) throws IOException {
+        RequestBody body = r.newBody();
+        String aspectRatio = r.getAspectRatio();
+        InputStrategy strategy = strategy(r);
+        // Multiple input images
+        List<String> images = r.getImages();
+        putIfNotNull(body, "input_image", urlInput(images.get(0), strategy, aspectRatio, body));
+        putIfNotNull(body, "input_image_2", urlInput(images.get(1), strategy, aspectRatio, body));
+        putIfNotNull(body, "input_image_3", urlInput(images.get(2), strategy, aspectRatio, body));
+        putIfNotNull(body, "input_image_4", urlInput(images.get(3), strategy, aspectRatio, body));
+        return body;
+    }
+
+    RequestBody buildBody(FillRequest r) throws IOException {
+        RequestBody body = r.newBody();
+        ImageSource b64 = tryEncodeInput(r.getImage());
+        ImageSource mask = encodeMaskFlexible(r.getMask());
+        ImagePreprocessor pre = imagePreprocessor;
+        if (pre != null && b64 != null) {
+            // fill keeps the input size, so only maxEdge applies; the mask follows the image pixel for pixel
+            ImagePreprocessor.Processed image = pre.process(b64, this, null);
+            ImagePreprocessor.Processed fitted = mask != null && image.resized()
+                    ? pre.fitMask(mask, this, image.width, image.height) : null;
+            if (fitted != null && fitted.width < 0) {
+                pre.discard(image); // the mask can't follow, so send both as they are
+            } else {
+                b64 = image.source;
+                body.addInputBytesSaved(image.bytesSaved);
+                if (fitted != null) {
+                    mask = fitted.source;
+                    body.addInputBytesSaved(fitted.bytesSaved);
+                }
+            }
+        }
+        putIfNotNull(body, "image", b64); // fill endpoint uses "image"
+        putIfNotNull(body, "mask", mask);
+        return body;
+    }
+
+    RequestBody buildBody(GenerateRequest r) throws IOException {
+        RequestBody body = r.newBody();
+        List<String> referenceImages = r.getReferenceImages();
+        if (!referenceImages.isEmpty()) {
+            List<Object> refs = new ArrayList<>();
+            InputStrategy strategy = strategy(r);
+            for (String ref : referenceImages) {
+                refs.add(urlInput(ref, strategy, r.getAspectRatio(), body));
+            }
+            body.put("reference_images", refs);
+        }
+        return body;
+    }
+
+    RequestBody buildBody(ExpandRequest r) throws IOException {
+        RequestBody body = r.newBody();
+        ImageSource b64 = tryEncodeInput(r.getImage());
+        int top = r.getTop(), bottom = r.getBottom(), left = r.getLeft(), right = r.getRight();
+        ImagePreprocessor pre = imagePreprocessor;
+        if (pre != null && b64 != null) {
+            // margins are in input pixels, so they shrink with the image
+            ImagePreprocessor.Processed image = pre.process(b64, this, null);
+            b64 = image.source;
+            body.addInputBytesSaved(image.bytesSaved);
+            if (image.resized()) {
+                top = (int) Math.round(top * image.scale);
+                bottom = (int) Math.round(bottom * image.scale);
+                left = (int) Math.round(left * image.scale);
+                right = (int) Math.round(right * image.scale);
+            }
+        }
+        putIfNotNull(body, "image", b64);
+        putIfNotNull(body, "top", top);
+        putIfNotNull(body, "bottom", bottom);
+        putIfNotNull(body, "left", left);
+        putIfNotNull(body, "right", right);
+        return body;
+    }
+
     // ----------------------
     // Internal utilities
     // ----------------------
@@ -322,248 +834,477 @@ public class Kontext4J {
         if (http == null || apiKey == null) throw new IllegalStateException("Call init(apiKey) first.");
     }
 
-    private static void putIfNotNull(JSONObject o, String k, Object v) {
+    private static void putIfNotNull(RequestBody o, String k, Object v) {
         if (v == null) return;
         // some values like Integer with default 0 we still want to include; caller controls nullness
         o.put(k, v);
     }
 
-    /** Heuristic: if input looks like a URL or existing file path fetch and convert; otherwise assume base64 or data URL. */
-    private String tryEncodeInput(String input) throws IOException, InterruptedException {
-        if (input == null) return null;
-        String s = input.trim();
-        if (s.isEmpty()) return null;
-        // detect http(s)
-        if (s.startsWith("http://") || s.startsWith("https://")) {
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(s))
-                    .timeout(requestTimeout)
-                    .GET().build();
-            HttpResponse<byte[]> r = http.send(req, HttpResponse.BodyHandlers.ofByteArray());
-            if (r.statusCode() >= 400) throw new IOException("Failed to fetch image URL: HTTP " + r.statusCode());
-            return Base64.getEncoder().encodeToString(r.body());
+    /** Heuristic: URL, existing file path, data URL or base64. Files and URLs are streamed/encoded at send time. */
+    private ImageSource tryEncodeInput(String input) {
+        return ImageSource.resolve(input);
+    }
+
+    /** Encode mask (maskImage may be null or path/url/base64). Returns the image source or null. */
+    private ImageSource encodeMaskFlexible(String maskImage) {
+        if (maskImage == null) return null;
+        return tryEncodeInput(maskImage);
+    }
+
+    /** Run the optional preprocessor over an image source; strings (URLs, base64) pass through untouched. */
+    private Object preprocess(Object input, String aspectRatio, RequestBody body) throws IOException {
+        ImagePreprocessor pre = imagePreprocessor;
+        if (pre == null || !(input instanceof ImageSource)) return input;
+        ImagePreprocessor.Processed p = pre.process((ImageSource) input, this, aspectRatio);
+        body.addInputBytesSaved(p.bytesSaved);
+        return p.source;
+    }
+
+    private InputStrategy strategy(KontextRequest r) {
+        return r.getInputStrategy() != null ? r.getInputStrategy() : inputStrategy;
+    }
+
+    /**
+     * An input for a field that accepts URLs (edit images, generate references): a URL passed through, an image
+     * source encoded at send time, or, when staging, the URL of the uploaded bytes.
+     */
+    private Object urlInput(String raw, InputStrategy strategy, String aspectRatio, RequestBody body) throws IOException {
+        Object ref = tryEncodeRef(raw);
+        if (ref == null) return null;
+        if (ref instanceof String && isUrl((String) ref)) {
+            if (strategy != InputStrategy.INLINE) return ref;
+            ref = ImageSource.ofUrl((String) ref); // downloaded and inlined
         }
-        // detect local file
-        Path p = Paths.get(s);
-        if (Files.exists(p)) {
-            byte[] b = Files.readAllBytes(p);
-            return Base64.getEncoder().encodeToString(b);
+        BlobStore store = blobStore;
+        if (strategy != InputStrategy.STAGE || store == null) return preprocess(ref, aspectRatio, body);
+        // an unchanged file is staged by identity, without reading it again
+        String identity = imagePreprocessor == null && ref instanceof ImageSource.PathSource
+                ? fileIdentity(((ImageSource.PathSource) ref).path) : null;
+        String url = identity != null ? stagedUrls.get(identity) : null;
+        if (url != null) return url;
+        ImageSource src = ref instanceof ImageSource ? (ImageSource) ref : ImageSource.ofBase64((String) ref);
+        Object processed = preprocess(src, aspectRatio, body);
+        url = stage((ImageSource) processed, store);
+        if (identity != null) stagedUrls.put(identity, url);
+        return url;
+    }
+
+    /** Upload an input to the blob store under its content hash, unless this client already did. */
+    private String stage(ImageSource src, BlobStore store) throws IOException {
+        byte[] data;
+        try (InputStream in = src.openRaw(this)) {
+            data = in.readAllBytes();
         }
-        // if it looks like data:image/...;base64, extract
-        if (s.startsWith("data:") && s.contains("base64,")) {
-            int idx = s.indexOf("base64,") + 7;
-            return s.substring(idx);
+        String ext = imageExtension(data);
+        String key = RequestBody.hex(RequestBody.sha256().digest(data)) + ext;
+        String url = stagedUrls.get(key);
+        if (url == null) {
+            url = store.put(key, data, ext.equals(".png") ? "image/png" : ext.equals(".jpg") ? "image/jpeg"
+                    : ext.equals(".webp") ? "image/webp" : "application/octet-stream");
+            stagedUrls.put(key, url);
+            stagedUploads.increment();
         }
-        // otherwise assume already base64
-        return s;
+        return url;
     }
 
-    /** Encode mask (maskImage may be null or path/url/base64). Returns base64 string or null. */
-    private String encodeMaskFlexible(String maskImage) throws IOException, InterruptedException {
-        if (maskImage == null) return null;
-        return tryEncodeInput(maskImage);
+    private static String fileIdentity(Path p) {
+        try {
+            return "file:" + p.toAbsolutePath() + "|" + Files.size(p) + "|" + Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Extension from the magic bytes; empty if unknown. */
+    private static String imageExtension(byte[] d) {
+        if (d.length >= 4 && (d[0] & 0xFF) == 0x89 && d[1] == 'P' && d[2] == 'N' && d[3] == 'G') return ".png";
+        if (d.length >= 3 && (d[0] & 0xFF) == 0xFF && (d[1] & 0xFF) == 0xD8 && (d[2] & 0xFF) == 0xFF) return ".jpg";
+        if (d.length >= 12 && d[0] == 'R' && d[1] == 'I' && d[2] == 'F' && d[3] == 'F'
+                && d[8] == 'W' && d[9] == 'E' && d[10] == 'B' && d[11] == 'P') return ".webp";
+        return "";
     }
 
-    /** For reference images we either pass raw urls or base64; encode when necessary. */
-    private Object tryEncodeRef(String r) throws IOException, InterruptedException {
+    private static boolean isUrl(String s) {
+        return s.startsWith("http://") || s.startsWith("https://");
+    }
+
+    /** For reference images we either pass raw urls or base64; local files are streamed at send time. */
+    private Object tryEncodeRef(String r) {
         if (r == null) return null;
         String trimmed = r.trim();
         if (trimmed.startsWith("http://") || trimmed.startsWith("https://")) return trimmed;
         Path p = Paths.get(trimmed);
-        if (Files.exists(p)) return Base64.getEncoder().encodeToString(Files.readAllBytes(p));
+        if (Files.exists(p)) return ImageSource.ofPath(p);
         if (trimmed.startsWith("data:base64,")) return trimmed.substring("data:base64,".length());
         return trimmed; // assume base64
     }
 
-    /** Execute the task: POST then poll the polling_url until Ready or return inline result. */
-    private JSONObject executeTask(String endpoint, JSONObject body) throws IOException, InterruptedException {
-        HttpRequest post = HttpRequest.newBuilder()
-                .uri(URI.create(endpoint))
-                .timeout(requestTimeout)
-                .header("accept", "application/json")
-                .header("Content-Type", "application/json")
-                .header("x-key", apiKey)
-                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
-                .build();
-
-        HttpResponse<String> initial = http.send(post, HttpResponse.BodyHandlers.ofString());
-        if (initial.statusCode() >= 400) {
-            throw new IOException("Task creation failed: HTTP " + initial.statusCode() + " -> " + initial.body());
-        }
-        JSONObject initJson = safeJson(initial.body());
-
-        // Some APIs may return results directly in `result` or `samples`, otherwise provide polling_url
-        String pollingUrl = initJson.optString("polling_url", null);
-        JSONObject resultInline = initJson.optJSONObject("result");
-        if (pollingUrl == null && resultInline != null) {
-            this.lastRawResult = initJson;
-            return initJson;
-        }
-        if (pollingUrl == null) {
-            // maybe endpoint returns `url` directly
-            if (initJson.has("url")) {
-                this.lastRawResult = initJson;
-                return initJson;
+    /** Execute the task: POST then poll the polling_url until Ready or return inline result. Blocks until done. */
+    private KontextResult executeTask(KontextRequest request, RequestBody body) throws IOException, InterruptedException {
+        return await(executeTaskAsync(request, body, new Submission(request.getDeadline(), false, null)));
+    }
+
+    /** Async task execution, served from the result cache when one is set and the request is deterministic. */
+    private CompletableFuture<KontextResult> executeTaskAsync(KontextRequest request, RequestBody body,
+                                                              Submission submission) {
+        String endpoint = resolve(request.getEndpoint());
+        ResultCache cache = resultCache;
+        if (cache == null || !cache.accepts(body)) return runTask(request, endpoint, body, null, submission);
+        String hash;
+        try {
+            hash = body.contentHash(endpoint, this);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return cache.get(hash, () -> runTask(request, endpoint, body, hash, submission));
+    }
+
+    /** The endpoint with the default host swapped for {@link #setBaseUrl}'s. */
+    private String resolve(String endpoint) {
+        String b = baseUrl;
+        if (b.equals(DEFAULT_BASE_URL) || !endpoint.startsWith(DEFAULT_BASE_URL + "/")) return endpoint;
+        return b + endpoint.substring(DEFAULT_BASE_URL.length());
+    }
+
+    /**
+     * POST via sendAsync, then hand the task to the poll scheduler. Completing the returned future early
+     * (cancel, deadline) stops the task: a queued creation is never sent and polling ends.
+     */
+    private CompletableFuture<KontextResult> runTask(KontextRequest request, String endpoint, RequestBody body,
+                                                     String hash, Submission submission) {
+        PollTask task = new PollTask(request.getModel(), endpoint);
+        task.policy = pollPolicy;
+        task.priority = request.getPriority();
+        long deadline = submission.deadline == null ? 0 : Math.max(1, submission.deadline.toMillis());
+        task.inputBytesSaved = body.inputBytesSaved();
+        TaskJournal journal = taskJournal;
+        String requestHash = hash;
+        if (requestHash == null && journal != null) {
+            try {
+                requestHash = body.contentHash(endpoint, this);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
             }
-            throw new IOException("No polling_url or inline result in response: " + initJson.toString());
+        }
+        String journalHash = requestHash;
+        WebhookReceiver receiver = webhookReceiver;
+        // a webhook field set by the caller or fixed by a template means the caller handles callbacks
+        boolean viaWebhook = receiver != null && !body.has("webhook_url") && !body.has("webhook_secret");
+        if (viaWebhook) {
+            body.put("webhook_url", receiver.register(task));
+            body.put("webhook_secret", receiver.getSecret());
+            // the callback completes the task; polling is only a slow safety net
+            task.policy = PollPolicy.fixed(webhookFallbackPollMillis);
         }
 
-        long start = System.currentTimeMillis();
-        while (true) {
-            HttpRequest poll = HttpRequest.newBuilder()
-                    .uri(URI.create(pollingUrl))
+        HttpRequest post;
+        try {
+            post = HttpRequest.newBuilder()
+                    .uri(URI.create(endpoint))
                     .timeout(requestTimeout)
+                    .header("accept", "application/json")
+                    .header("Content-Type", "application/json")
                     .header("x-key", apiKey)
-                    .GET().build();
-            HttpResponse<String> pollRes = http.send(poll, HttpResponse.BodyHandlers.ofString());
-            if (pollRes.statusCode() >= 400) {
-                throw new IOException("Polling failed: HTTP " + pollRes.statusCode() + " -> " + pollRes.body());
+                    .POST(body.publisher(this))
+                    .build();
+        } catch (RuntimeException e) {
+            task.done.completeExceptionally(e); // releases the webhook registration
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // Resending a creation is only safe if it can't produce a second, different result
+        boolean idempotent = body.has("seed");
+        Predicate<Throwable> retryable = Retries.forCreate(idempotent);
+        if (submission.batched) retryable = retryable.and(t -> !(t instanceof RateLimitedException));
+        // each attempt waits for its rate-limiter permit (in priority order) before it may take a breaker trial
+        RateLimiter limiter = rateLimiter;
+        Supplier<CompletableFuture<Void>> admission = limiter == null ? null
+                : () -> limiter.acquire(task.priority, task.done);
+        CompletableFuture<KontextResult> result = Retries.run(admission, () -> createOnce(post, task, limiter),
+                createRetryPolicy, retryable, circuitBreaker(endpoint)).thenCompose(initial -> {
+            task.createdAt = System.currentTimeMillis();
+            if (submission.onCreated != null) submission.onCreated.run();
+            fire(l -> l.onCreated(task, task.createdAt - task.submittedAt));
+            TaskResponse initJson;
+            try {
+                initJson = TaskResponse.parse(initial.body());
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
             }
-            JSONObject jr = safeJson(pollRes.body());
-            String status = jr.optString("status", "");
-            if ("Ready".equalsIgnoreCase(status) || "Succeeded".equalsIgnoreCase(status)) {
-                this.lastRawResult = jr;
-                return jr;
+            task.id = initJson.id;
+            if (viaWebhook) receiver.bindTaskId(task);
+
+            // Some APIs may return results directly in `result` or `samples`, otherwise provide polling_url
+            String pollingUrl = initJson.pollingUrl;
+            if (pollingUrl == null && initJson.hasResult) {
+                return CompletableFuture.completedFuture(task.toResult(initJson));
             }
-            // handle immediate error
-            if (jr.has("error") || "Failed".equalsIgnoreCase(status)) {
-                throw new IOException("Task failed during polling: " + jr.toString());
+            if (pollingUrl == null) {
+                // maybe endpoint returns `url` directly
+                if (initJson.hasUrl) {
+                    return CompletableFuture.completedFuture(task.toResult(initJson));
+                }
+                return CompletableFuture.failedFuture(
+                        new IOException("No polling_url or inline result in response: " + initJson.text()));
             }
-            if (System.currentTimeMillis() - start > maxWaitMillis) {
-                throw new IOException("Polling timed out after " + maxWaitMillis + "ms; last status=" + status);
+
+            task.pollingUrl = pollingUrl;
+            task.poller = this::pollOnce;
+            task.maxWaitMillis = deadline > 0
+                    ? Math.min(maxWaitMillis, deadline - (task.createdAt - task.submittedAt))
+                    : maxWaitMillis;
+            if (task.done.isDone()) return task.done; // cancelled while the POST was in flight
+            if (task.id != null) activeTaskIds.put(task.id, Boolean.TRUE);
+            journal(journal, j -> j.created(task, journalHash));
+            pollScheduler.submit(task);
+            return task.done;
+        });
+        if (deadline > 0) {
+            ScheduledFuture<?> timer = DeadlineTimer.EXECUTOR.schedule(() -> result.completeExceptionally(
+                    new IOException("Deadline of " + deadline + "ms exceeded; last status=" + task.status)),
+                    deadline, TimeUnit.MILLISECONDS);
+            result.whenComplete((r, e) -> timer.cancel(false)); // drops the timer's hold on the task right away
+        }
+        return track(task, result);
+    }
+
+    /**
+     * Settle the task on every path (inline result, creation failure, cancel) so polling stops and registrations
+     * are released; notify observers.
+     */
+    private CompletableFuture<KontextResult> track(PollTask task, CompletableFuture<KontextResult> result) {
+        result.whenComplete((r, e) -> {
+            TaskJournal journal = taskJournal;
+            if (e != null) {
+                Throwable cause = unwrap(e);
+                task.done.completeExceptionally(cause);
+                if (task.id != null) activeTaskIds.remove(task.id);
+                journal(journal, j -> j.failed(task, cause));
+                fire(l -> l.onFailed(task, cause));
+            } else {
+                task.done.complete(r);
+                if (task.id != null) activeTaskIds.remove(task.id);
+                journal(journal, j -> j.completed(task, r));
+                fire(l -> l.onCompleted(task, r));
             }
-            Thread.sleep(pollIntervalMillis);
+        });
+        return result;
+    }
+
+    /**
+     * Resume polling every task the journal lists as pending, e.g. after a restart. Tasks this client is
+     * already polling are skipped. Results are delivered through the returned futures and to listeners.
+     */
+    public List<CompletableFuture<KontextResult>> resumePending() {
+        ensureInit();
+        TaskJournal journal = taskJournal;
+        if (journal == null) throw new IllegalStateException("No task journal set, call setTaskJournal(...) first.");
+        List<CompletableFuture<KontextResult>> resumed = new ArrayList<>();
+        for (TaskJournal.Entry e : journal.getPending()) {
+            if (e.getPollingUrl() == null || e.getEndpoint() == null) continue;
+            if (activeTaskIds.putIfAbsent(e.getTaskId(), Boolean.TRUE) != null) continue;
+            PollTask task = new PollTask(e.getModel(), e.getEndpoint());
+            task.id = e.getTaskId();
+            task.pollingUrl = e.getPollingUrl();
+            task.createdAt = e.getCreatedAt() > 0 ? e.getCreatedAt() : System.currentTimeMillis();
+            task.policy = pollPolicy;
+            task.poller = this::pollOnce;
+            // a full wait from now, however long the process was down
+            task.maxWaitMillis = task.elapsedMillis() + maxWaitMillis;
+            pollScheduler.submit(task);
+            resumed.add(track(task, task.done));
         }
+        return resumed;
     }
 
-    /** Extract sample(s) from the final JSON and store into lastResultUrls. Returns list found (may be empty). */
-    private List<String> extractAndStoreUrls(JSONObject finalJson) {
-        lastResultUrls.clear();
-        if (finalJson == null) return lastResultUrls;
+    /**
+     * One creation POST (already admitted by the rate limiter, if any); fails on HTTP errors so the retry layer
+     * can classify them. Not sent once the task was cancelled.
+     */
+    private CompletableFuture<HttpResponse<byte[]>> createOnce(HttpRequest post, PollTask task, RateLimiter limiter) {
+        CompletableFuture<HttpResponse<byte[]>> sent = task.done.isDone()
+                ? CompletableFuture.failedFuture(new CancellationException("Task cancelled"))
+                : http.sendAsync(post, HttpResponse.BodyHandlers.ofByteArray());
+        return sent.thenCompose(initial -> {
+            if (initial.statusCode() == 429) {
+                long retryAfter = retryAfterMillis(initial);
+                if (limiter != null) limiter.onRateLimited(retryAfter);
+                return CompletableFuture.failedFuture(new RateLimitedException(
+                        "Task creation rate limited: HTTP 429 -> " + text(initial), retryAfter));
+            }
+            if (initial.statusCode() >= 400) {
+                return CompletableFuture.failedFuture(new KontextHttpException(
+                        "Task creation failed: HTTP " + initial.statusCode() + " -> " + text(initial), initial.statusCode()));
+            }
+            if (limiter != null) limiter.onSuccess();
+            return CompletableFuture.completedFuture(initial);
+        });
+    }
 
-        // Common shapes: result.sample (string), result.samples (array), result.outputs (array of objects with url/sample)
-        JSONObject result = finalJson.optJSONObject("result");
-        if (result != null) {
-            // sample
-            if (result.has("sample")) {
-                String s = result.optString("sample", null);
-                if (s != null) lastResultUrls.add(s);
+    /** A single poll (retried per pollRetryPolicy); the scheduler decides what the status means and when to poll again. */
+    private CompletableFuture<TaskResponse> pollOnce(PollTask task) {
+        HttpRequest poll = HttpRequest.newBuilder()
+                .uri(URI.create(task.pollingUrl))
+                .timeout(requestTimeout)
+                .header("x-key", apiKey)
+                .GET().build();
+        long start = System.nanoTime();
+        return Retries.run(() -> http.sendAsync(poll, HttpResponse.BodyHandlers.ofByteArray()).thenCompose(pollRes -> {
+            if (pollRes.statusCode() >= 400) {
+                return CompletableFuture.failedFuture(new KontextHttpException(
+                        "Polling failed: HTTP " + pollRes.statusCode() + " -> " + text(pollRes), pollRes.statusCode()));
             }
-            // samples
-            if (result.has("samples")) {
-                JSONArray arr = result.optJSONArray("samples");
-                if (arr != null) for (int i=0;i<arr.length();i++) lastResultUrls.add(arr.optString(i, null));
+            return CompletableFuture.completedFuture(pollRes);
+        }), pollRetryPolicy, Retries::forPoll, circuitBreaker(pollEndpoint(task.pollingUrl))).thenCompose(pollRes -> {
+            TaskResponse json;
+            try {
+                json = TaskResponse.parse(pollRes.body());
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
             }
-            // outputs
-            if (result.has("outputs")) {
-                JSONArray out = result.optJSONArray("outputs");
-                if (out != null) for (int i=0;i<out.length();i++) {
-                    JSONObject o = out.optJSONObject(i);
-                    if (o == null) continue;
-                    if (o.has("sample")) lastResultUrls.add(o.optString("sample", null));
-                    else if (o.has("url")) lastResultUrls.add(o.optString("url", null));
-                }
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            String status = json.status;
+            journal(taskJournal, j -> j.status(task, status));
+            fire(l -> l.onPoll(task, status, latency));
+            return CompletableFuture.completedFuture(json);
+        });
+    }
+
+    /** Record to the journal, if any. Journaling must never change a task's outcome, so failures are dropped here. */
+    private static void journal(TaskJournal journal, Consumer<TaskJournal> record) {
+        if (journal == null) return;
+        try {
+            record.accept(journal);
+        } catch (RuntimeException ignored) {
+            // write errors are counted by the journal itself
+        }
+    }
+
+    /** Deliver an event to every listener; listener failures are ignored. */
+    void fire(Consumer<KontextListener> event) {
+        for (KontextListener l : listeners) {
+            try {
+                event.accept(l);
+            } catch (RuntimeException ignored) {
+                // observers must never break a task
             }
         }
+    }
 
-        // Top-level url
-        if (finalJson.has("url")) lastResultUrls.add(finalJson.optString("url", null));
+    /** Breaker per endpoint (scheme+host+path), or null when breakers are disabled. */
+    private CircuitBreaker circuitBreaker(String endpoint) {
+        if (breakerFailureThreshold <= 0) return null;
+        return circuitBreakers.computeIfAbsent(endpoint,
+                e -> new CircuitBreaker(e, breakerFailureThreshold, breakerOpenMillis));
+    }
 
-        // If still empty, try to find any string-valued fields that look like an image URL
-        if (lastResultUrls.isEmpty()) {
-            // simple heuristic: scan keys
-            for (String k : finalJson.keySet()) {
-                Object v = finalJson.opt(k);
-                if (v instanceof String) {
-                    String s = (String) v;
-                    if (looksLikeUrl(s)) lastResultUrls.add(s);
-                }
+    /** Polling URLs differ per task only in their query string; group them per endpoint. */
+    private static String pollEndpoint(String pollingUrl) {
+        int q = pollingUrl.indexOf('?');
+        return q < 0 ? pollingUrl : pollingUrl.substring(0, q);
+    }
+
+    /** Retry-After as millis (delta-seconds or HTTP date); 1s if absent or unparsable. */
+    private static long retryAfterMillis(HttpResponse<?> res) {
+        String v = res.headers().firstValue("Retry-After").orElse(null);
+        if (v == null) return 1000;
+        try {
+            return Math.max(0, (long) (Double.parseDouble(v.trim()) * 1000));
+        } catch (NumberFormatException e) {
+            try {
+                return Math.max(0, ZonedDateTime.parse(v.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                        .toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (DateTimeParseException e2) {
+                return 1000;
             }
         }
+    }
 
-        // remove nulls
-        lastResultUrls.removeIf(x -> x == null || x.isBlank());
-        return new ArrayList<>(lastResultUrls);
+    /** Block on a future, surfacing the original IOException / InterruptedException like the sync API always did. */
+    private static <T> T await(CompletableFuture<T> f) throws IOException, InterruptedException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            f.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable c = unwrap(e);
+            if (c instanceof IOException) throw (IOException) c;
+            if (c instanceof InterruptedException) throw (InterruptedException) c;
+            if (c instanceof RuntimeException) throw (RuntimeException) c;
+            if (c instanceof Error) throw (Error) c;
+            throw new IOException(c);
+        }
     }
 
-    private void downloadFromUrl(String url, Path outputPath) throws IOException, InterruptedException {
-        HttpRequest req = HttpRequest.newBuilder().uri(URI.create(url)).timeout(requestTimeout).GET().build();
-        HttpResponse<InputStream> res = http.send(req, HttpResponse.BodyHandlers.ofInputStream());
-        if (res.statusCode() >= 400) throw new IOException("Failed to download result: HTTP " + res.statusCode());
-        Files.createDirectories(outputPath.getParent());
-        Files.copy(res.body(), outputPath, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException
+                || t instanceof UncheckedIOException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
     }
 
-    private static boolean looksLikeUrl(String s) {
-        if (s == null) return false;
-        String lower = s.toLowerCase();
-        return lower.startsWith("http://") || lower.startsWith("https://") || lower.startsWith("data:");
+    /** Open a remote input image for streaming (used by URL image sources at send time). */
+    InputStream openUrl(String url) throws IOException {
+        HttpResponse<InputStream> r = get(url);
+        if (r.statusCode() >= 400) {
+            r.body().close();
+            throw new IOException("Failed to fetch image URL: HTTP " + r.statusCode());
+        }
+        return r.body();
     }
 
-    private static JSONObject safeJson(String s) throws IOException {
+    /** Blocking GET with extra header name/value pairs; the caller owns the body stream. */
+    HttpResponse<InputStream> get(String url, String... headers) throws IOException {
+        HttpRequest.Builder req = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(requestTimeout)
+                .GET();
+        if (headers.length > 0) req.headers(headers);
         try {
-            return new JSONObject(s);
-        } catch (JSONException e) {
-            throw new IOException("Invalid JSON from server: " + s, e);
+            return http.send(req.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted fetching " + url);
         }
     }
 
+    private void downloadFromUrl(String url, Path outputPath) throws IOException, InterruptedException {
+        await(downloads.download(url, outputPath));
+    }
+
+    HttpClient http() {
+        return http;
+    }
+
+    Duration requestTimeout() {
+        return requestTimeout;
+    }
+
+    /** Error bodies are small; decode them only for the exception message. */
+    private static String text(HttpResponse<byte[]> res) {
+        return new String(res.body(), StandardCharsets.UTF_8);
+    }
+
     // ----------------------
     // Convenience / builder-style overloads
     // ----------------------
 
     // Simple edit overload
     public Kontext4J editSimple(String inputImage, String prompt) throws IOException, InterruptedException {
-        return edit(
-                inputImage,
-                prompt,
-                null, // aspect_ratio
-                null, // seed
-                null, // prompt_upsampling
-                null, // safety_tolerance
-                null, // output_format
-                null, // webhook_url
-                null, // image_guidance_scale
-                null, // num_inference_steps
-                null, // guidance_scale
-                null, // negative_prompt
-                null, // control_image
-                null, // control_mode
-                null, // mask_image
-                null  // mask_mode
-        );
+        return execute(EditRequest.builder().image(inputImage).prompt(prompt).build());
     }
 
     public Kontext4J generateSimple(String prompt) throws IOException, InterruptedException {
-        return generate(
-                prompt,
-                null, // aspect_ratio
-                null, // seed
-                null, // prompt_upsampling
-                null, // safety_tolerance
-                null, // output_format
-                null, // webhook_url
-                null, // image_guidance_scale
-                null, // num_inference_steps
-                null, // guidance_scale
-                null, // negative_prompt
-                null, // control_image
-                null, // control_mode
-                null, // mask_image
-                null  // mask_mode
-        );
+        return execute(GenerateRequest.builder().prompt(prompt).build());
     }
 
-
+    /** Edit with up to four images; extra images are ignored. */
     public Kontext4J editMerge(List<String> images, String prompt) throws IOException, InterruptedException {
-        String img1 = images.size() > 0 ? images.get(0) : null;
-        String img2 = images.size() > 1 ? images.get(1) : null;
-        String img3 = images.size() > 2 ? images.get(2) : null;
-        String img4 = images.size() > 3 ? images.get(3) : null;
-
-        return edit(img1, img2, img3, img4, prompt,
-                null, null, null, null, null, null, null,
-                null, null, null, null);
+        EditRequest.Builder b = EditRequest.builder().prompt(prompt);
+        for (int i = 0; i < Math.min(4, images.size()); i++) b.image(i + 1, images.get(i));
+        return execute(b.build());
     }
 
     // ----------------------
@@ -0,0 +1,225 @@
+package io.github.initio.kontext4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A running batch from {@link Kontext4J#submitBatch(List)} or {@link KontextPool#submitBatch(List)}. Iterate to receive results in completion order.
+ *
+ * - At most {@code maxConcurrency} tasks are in flight (created or polling) at once
+ * - Requests start by {@link Priority}, then in list order
+ * - HTTP 429 on creation doesn't fail the item: it goes back to the front of the queue, the whole
+ *   batch pauses for Retry-After and the concurrency cap halves, then grows back by one per success.
+ *   The client's create retry policy doesn't retry these first, so the batch backs off on the first 429
+ * - Any other failure is delivered as a {@link BatchItem} with its error
+ */
+public final class KontextBatch implements Iterable<BatchItem>, AutoCloseable {
+
+    private static final int MAX_RATE_LIMIT_RETRIES = 20;
+
+    private final Function<KontextRequest, CompletableFuture<KontextResult>> submitter;
+    private final List<KontextRequest> requests;
+    private final int maxConcurrency;
+    private final BlockingQueue<BatchItem> results = new LinkedBlockingQueue<>();
+
+    // guarded by this
+    private final ArrayDeque<Integer> queue = new ArrayDeque<>();
+    private final Map<Integer, CompletableFuture<KontextResult>> tasks = new HashMap<>();
+    private final int[] rateLimitRetries;
+    private int concurrency;
+    private int running;
+    private long pausedUntil;
+    private boolean pumping;
+    private boolean pumpAgain;
+    private boolean cancelled;
+    private int delivered;
+
+    KontextBatch(Function<KontextRequest, CompletableFuture<KontextResult>> submitter, List<KontextRequest> requests,
+                 int maxConcurrency) {
+        if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be >= 1");
+        this.submitter = submitter;
+        this.requests = List.copyOf(requests);
+        this.maxConcurrency = maxConcurrency;
+        this.concurrency = maxConcurrency;
+        this.rateLimitRetries = new int[this.requests.size()];
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < this.requests.size(); i++) order.add(i);
+        order.sort(Comparator.comparingInt(i -> this.requests.get(i).getPriority().ordinal())); // stable
+        queue.addAll(order);
+    }
+
+    void start() {
+        pump();
+    }
+
+    /** Number of requests in the batch. */
+    public int size() {
+        return requests.size();
+    }
+
+    /** Current concurrency cap (lowered after 429s). */
+    public synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+    /** Tasks in flight right now. */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /** Next finished item, waiting if needed; null once every item was taken. */
+    public BatchItem take() throws InterruptedException {
+        synchronized (this) {
+            if (delivered >= requests.size()) return null;
+            delivered++;
+        }
+        try {
+            return results.take();
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                delivered--;
+            }
+            throw e;
+        }
+    }
+
+    /** Next finished item, or null if none finished within the timeout. */
+    public BatchItem poll(long timeout, TimeUnit unit) throws InterruptedException {
+        BatchItem item = results.poll(timeout, unit);
+        if (item != null) {
+            synchronized (this) {
+                delivered++;
+            }
+        }
+        return item;
+    }
+
+    /** Blocking iterator over results in completion order. */
+    @Override
+    public Iterator<BatchItem> iterator() {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                synchronized (KontextBatch.this) {
+                    return delivered < requests.size();
+                }
+            }
+
+            @Override
+            public BatchItem next() {
+                try {
+                    BatchItem item = take();
+                    if (item == null) throw new NoSuchElementException();
+                    return item;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for batch results", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Cancel the batch: queued requests are never sent, running tasks stop polling. Every unfinished item is
+     * delivered with a {@link CancellationException}. Tasks the API already accepted still run there.
+     */
+    public void cancel() {
+        List<Integer> dropped;
+        List<CompletableFuture<KontextResult>> running;
+        synchronized (this) {
+            cancelled = true;
+            dropped = List.copyOf(queue);
+            queue.clear();
+            running = List.copyOf(tasks.values());
+        }
+        for (int i : dropped) {
+            results.add(new BatchItem(i, requests.get(i), null, new CancellationException("Batch cancelled")));
+        }
+        for (CompletableFuture<KontextResult> f : running) f.cancel(false);
+    }
+
+    @Override
+    public void close() {
+        cancel();
+    }
+
+    // ----------------------
+    // Scheduling
+    // ----------------------
+
+    /** Start as many queued requests as the cap allows; re-entrant calls just ask for another round. */
+    private void pump() {
+        synchronized (this) {
+            if (pumping) {
+                pumpAgain = true;
+                return;
+            }
+            pumping = true;
+        }
+        while (true) {
+            int index;
+            synchronized (this) {
+                long wait = pausedUntil - System.currentTimeMillis();
+                if (cancelled || queue.isEmpty() || running >= concurrency || wait > 0) {
+                    if (!cancelled && !queue.isEmpty() && wait > 0) {
+                        CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS).execute(this::pump);
+                    }
+                    if (pumpAgain) {
+                        pumpAgain = false;
+                        continue;
+                    }
+                    pumping = false;
+                    return;
+                }
+                index = queue.poll();
+                running++;
+            }
+            run(index);
+        }
+    }
+
+    private void run(int index) {
+        KontextRequest request = requests.get(index);
+        CompletableFuture<KontextResult> task;
+        try {
+            task = submitter.apply(request);
+        } catch (RuntimeException e) {
+            task = CompletableFuture.failedFuture(e);
+        }
+        synchronized (this) {
+            if (!task.isDone()) tasks.put(index, task);
+        }
+        task.whenComplete((result, err) -> {
+            Throwable cause = err == null ? null : Kontext4J.unwrap(err);
+            boolean requeued = false;
+            synchronized (this) {
+                tasks.remove(index);
+                running--;
+                if (cause instanceof RateLimitedException && !cancelled
+                        && ++rateLimitRetries[index] <= MAX_RATE_LIMIT_RETRIES) {
+                    requeued = true;
+                    queue.addFirst(index);
+                    concurrency = Math.max(1, concurrency / 2);
+                    long retryAfter = ((RateLimitedException) cause).getRetryAfterMillis();
+                    pausedUntil = Math.max(pausedUntil, System.currentTimeMillis() + retryAfter);
+                } else if (cause == null && concurrency < maxConcurrency) {
+                    concurrency++;
+                }
+            }
+            if (!requeued) results.add(new BatchItem(index, request, result, cause));
+            pump();
+        });
+    }
+}
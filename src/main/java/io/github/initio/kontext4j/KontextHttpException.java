@@ -0,0 +1,20 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+
+/** The API answered with an HTTP error status. */
+public class KontextHttpException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public KontextHttpException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
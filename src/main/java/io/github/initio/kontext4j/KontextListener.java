@@ -0,0 +1,53 @@
+package io.github.initio.kontext4j;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Observes the lifecycle of every task a client runs: creation, each poll, completion or failure, and result
+ * downloads. Register with {@link Kontext4J#addListener}.
+ *
+ * Callbacks run on HTTP/scheduler threads, so they must be cheap and thread-safe. Exceptions they throw are
+ * swallowed; a broken listener never fails a task.
+ *
+ * @see LatencyRecorder
+ */
+public interface KontextListener {
+
+    /** Read-only view of a task. Times are millis since the task was created, as for {@link PollPolicy.State}. */
+    interface Task extends PollPolicy.State {
+        /** Model the task was submitted as ("edit", "fill", "generate", "expand"). */
+        String model();
+
+        /** Task id from the API, or null if creation never succeeded. */
+        String taskId();
+
+        /** Epoch millis when the task was submitted (before rate limiting and creation retries). */
+        long submittedAt();
+
+        /** Millis between first seeing {@code status} and the next status (or now), -1 if never seen. */
+        default long millisInStatus(String status) {
+            long entered = -1;
+            for (Map.Entry<String, Long> e : statusHistory().entrySet()) {
+                if (entered >= 0) return e.getValue() - entered;
+                if (e.getKey().equalsIgnoreCase(status)) entered = e.getValue();
+            }
+            return entered < 0 ? -1 : elapsedMillis() - entered;
+        }
+    }
+
+    /** The creation POST succeeded; {@code submitMillis} covers admission, retries and the POST itself. */
+    default void onCreated(Task task, long submitMillis) {}
+
+    /** A poll came back with {@code status}; {@code latencyMillis} is that poll's round trip, retries included. */
+    default void onPoll(Task task, String status, long latencyMillis) {}
+
+    /** The task produced a result. */
+    default void onCompleted(Task task, KontextResult result) {}
+
+    /** The task failed: creation error, failed status, poll error or timeout. */
+    default void onFailed(Task task, Throwable error) {}
+
+    /** A result file was written to {@code target}. */
+    default void onDownloaded(String url, Path target, long bytes, long millis) {}
+}
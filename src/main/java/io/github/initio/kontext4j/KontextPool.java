@@ -0,0 +1,283 @@
+package io.github.initio.kontext4j;
+
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spreads tasks over several backends, each an API key and base URL with its own {@link Kontext4J} client.
+ *
+ * <pre>
+ * KontextPool pool = new KontextPool()
+ *         .addBackend(keyA, "https://api.bfl.ai")
+ *         .addBackend(keyB, "https://api.eu.bfl.ai");
+ * KontextResult r = pool.submit(GenerateRequest.builder().prompt("...").build()).join();
+ * </pre>
+ *
+ * - Each task goes to the least-loaded backend: fewest tasks in flight, weighted by recent creation latency
+ * - A task is polled by the backend that created it (its key, its polling_url)
+ * - A backend answering 429/5xx, timing out or refusing connections is taken out of rotation for
+ *   {@link #setEjectMillis} (at least Retry-After on 429); if every backend is out, the one back soonest is used
+ * - If creation fails without creating anything (429, 503, connection refused, open circuit), the request
+ *   is sent to the next backend; tasks that were created are never resent
+ * - Cancelling a returned future stops the task on its backend
+ *
+ * Failover happens after a backend's own creation retries ({@link Kontext4J#setCreateRetryPolicy}); add
+ * tuned clients with {@link #addBackend(String, Kontext4J)}.
+ */
+public final class KontextPool {
+
+    /** One backend and its live routing state. */
+    public static final class Backend {
+        private final String name;
+        private final Kontext4J client;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder ejections = new LongAdder();
+        private volatile double latencyMillis;
+        private volatile long ejectedUntil;
+
+        Backend(String name, Kontext4J client) {
+            this.name = name;
+            this.client = client;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Kontext4J getClient() {
+            return client;
+        }
+
+        /** Tasks created or being created here that haven't finished. */
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        /** Moving average of the creation POST latency; 0 before the first task. */
+        public double getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        public boolean isEjected() {
+            return ejectedUntil > System.currentTimeMillis();
+        }
+
+        /** Epoch millis the backend returns to rotation (in the past when it is in rotation). */
+        public long getEjectedUntil() {
+            return ejectedUntil;
+        }
+
+        public long getSubmitted() {
+            return submitted.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        public long getEjections() {
+            return ejections.sum();
+        }
+
+        void recordLatency(long millis) {
+            double l = latencyMillis;
+            latencyMillis = l == 0 ? Math.max(1, millis) : l + LATENCY_ALPHA * (millis - l);
+        }
+
+        void eject(long millis) {
+            long now = System.currentTimeMillis();
+            long was = ejectedUntil;
+            if (was <= now) ejections.increment();
+            if (now + millis > was) ejectedUntil = now + millis;
+        }
+
+        /** Lower is better: queue length times how slow the backend has been lately. */
+        double score() {
+            return (inFlight.get() + 1) * Math.max(1, latencyMillis);
+        }
+
+        @Override
+        public String toString() {
+            return name + " inFlight=" + inFlight.get() + " latency=" + Math.round(latencyMillis) + "ms"
+                    + (isEjected() ? " ejected" : "");
+        }
+    }
+
+    private static final double LATENCY_ALPHA = 0.2;
+
+    private final List<Backend> backends = new CopyOnWriteArrayList<>();
+    private volatile long ejectMillis = 30_000;
+    private volatile int batchConcurrency = 8;
+
+    /** Add a backend with a default client for {@code apiKey} at {@code baseUrl} (see {@link Kontext4J#setBaseUrl}). */
+    public KontextPool addBackend(String apiKey, String baseUrl) {
+        Kontext4J client = new Kontext4J().init(apiKey).setBaseUrl(baseUrl);
+        return addBackend("#" + (backends.size() + 1) + " " + client.getBaseUrl(), client);
+    }
+
+    /** Add a configured (and initialized) client as a backend. */
+    public KontextPool addBackend(String name, Kontext4J client) {
+        backends.add(new Backend(Objects.requireNonNull(name, "name"), Objects.requireNonNull(client, "client")));
+        return this;
+    }
+
+    /** How long a failing backend stays out of rotation (default 30 s). */
+    public KontextPool setEjectMillis(long ms) {
+        if (ms < 0) throw new IllegalArgumentException("ejectMillis must be >= 0");
+        this.ejectMillis = ms;
+        return this;
+    }
+
+    /** Default max tasks in flight for {@link #submitBatch(List)}, across all backends. */
+    public KontextPool setBatchConcurrency(int n) {
+        if (n < 1) throw new IllegalArgumentException("batch concurrency must be >= 1");
+        this.batchConcurrency = n;
+        return this;
+    }
+
+    public List<Backend> getBackends() {
+        return Collections.unmodifiableList(backends);
+    }
+
+    /** Tasks in flight over all backends. */
+    public int getInFlight() {
+        int n = 0;
+        for (Backend b : backends) n += b.getInFlight();
+        return n;
+    }
+
+    // ----------------------
+    // Submission
+    // ----------------------
+
+    /** Run one request on the least-loaded backend without blocking. */
+    public CompletableFuture<KontextResult> submit(KontextRequest request) {
+        return submit(request, false);
+    }
+
+    private CompletableFuture<KontextResult> submit(KontextRequest request, boolean batched) {
+        if (backends.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No backends, call addBackend(...) first."));
+        }
+        CompletableFuture<KontextResult> out = new CompletableFuture<>();
+        attempt(request, System.nanoTime(), batched, new ArrayList<>(), out);
+        return out;
+    }
+
+    /** Like {@link Kontext4J#submitBatch(List)}, spread over the backends. */
+    public KontextBatch submitBatch(List<KontextRequest> requests) {
+        return submitBatch(requests, batchConcurrency);
+    }
+
+    public KontextBatch submitBatch(List<KontextRequest> requests, int maxConcurrency) {
+        KontextBatch batch = new KontextBatch(r -> submit(r, true), requests, maxConcurrency);
+        batch.start();
+        return batch;
+    }
+
+    /** One try on the next backend; failovers only get what is left of the request's deadline since {@code submitted}. */
+    private void attempt(KontextRequest request, long submitted, boolean batched, List<Backend> tried,
+                         CompletableFuture<KontextResult> out) {
+        Duration deadline = request.getDeadline() == null ? null
+                : request.getDeadline().minusNanos(System.nanoTime() - submitted);
+        Backend b = pick(tried);
+        tried.add(b);
+        b.inFlight.incrementAndGet();
+        b.submitted.increment();
+        long start = System.nanoTime();
+        AtomicBoolean created = new AtomicBoolean();
+        CompletableFuture<KontextResult> task;
+        try {
+            task = b.client.submit(request, new Kontext4J.Submission(deadline, batched, () -> {
+                created.set(true);
+                b.recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }));
+        } catch (RuntimeException e) {
+            task = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<KontextResult> current = task;
+        out.whenComplete((r, err) -> {
+            if (out.isCancelled()) current.cancel(false); // stop the backend's polling too
+        });
+        task.whenComplete((r, err) -> {
+            b.inFlight.decrementAndGet();
+            if (err == null) {
+                out.complete(r);
+                return;
+            }
+            Throwable cause = Kontext4J.unwrap(err);
+            if (overloaded(cause)) {
+                long retryAfter = cause instanceof RateLimitedException
+                        ? ((RateLimitedException) cause).getRetryAfterMillis() : 0;
+                b.eject(Math.max(ejectMillis, retryAfter));
+            }
+            if (!created.get() && notCreated(cause) && tried.size() < backends.size() && !out.isDone()
+                    && !expired(request, submitted)) {
+                attempt(request, submitted, batched, tried, out);
+                return;
+            }
+            b.failed.increment();
+            out.completeExceptionally(cause);
+        });
+    }
+
+    private static boolean expired(KontextRequest request, long submitted) {
+        Duration d = request.getDeadline();
+        return d != null && System.nanoTime() - submitted >= d.toNanos();
+    }
+
+    /** Least-loaded backend in rotation not tried yet; if all are out, the one back soonest. */
+    private Backend pick(List<Backend> tried) {
+        List<Backend> all = backends;
+        long now = System.currentTimeMillis();
+        Backend best = null;
+        Backend soonest = null;
+        int n = all.size();
+        int offset = ThreadLocalRandom.current().nextInt(n); // ties go to a random backend
+        for (int i = 0; i < n; i++) {
+            Backend b = all.get((offset + i) % n);
+            if (tried.contains(b)) continue;
+            if (b.ejectedUntil > now) {
+                if (soonest == null || b.ejectedUntil < soonest.ejectedUntil) soonest = b;
+            } else if (best == null || b.score() < best.score()) {
+                best = b;
+            }
+        }
+        return best != null ? best : soonest;
+    }
+
+    /** The backend itself is struggling (as opposed to a bad request or a failed generation). */
+    private static boolean overloaded(Throwable t) {
+        if (t instanceof KontextHttpException) {
+            int s = ((KontextHttpException) t).getStatusCode();
+            return s == 429 || s >= 500;
+        }
+        return t instanceof CircuitOpenException || t instanceof ConnectException || t instanceof HttpTimeoutException;
+    }
+
+    /** Failed before the API could have created anything, so another backend may take the request. */
+    private static boolean notCreated(Throwable t) {
+        return Retries.notProcessed(t) || t instanceof CircuitOpenException;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("KontextPool");
+        for (Backend b : backends) sb.append("\n  ").append(b);
+        return sb.toString();
+    }
+}
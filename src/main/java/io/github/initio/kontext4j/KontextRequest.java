@@ -0,0 +1,361 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One task to run later, e.g. in {@link Kontext4J#submitBatch(List)} or {@link Kontext4J#submit(KontextRequest)}.
+ *
+ * Build one with the typed builders ({@link EditRequest}, {@link FillRequest}, {@link GenerateRequest},
+ * {@link ExpandRequest}); requests are immutable and can be sent any number of times. Settings shared by many
+ * calls go into a {@link KontextTemplate}. The static factories mirror the positional parameters of
+ * edit/fill/generate/expand. Inputs are only referenced here; they are read and encoded when the request is sent.
+ */
+public abstract class KontextRequest {
+
+    private final String model;
+    private final String endpoint;
+    private final KontextTemplate template;
+    private final Map<String, Object> params;
+    private final Priority priority;
+    private final Duration deadline;
+    private final InputStrategy inputStrategy;
+
+    /** Typed request; the subclass builds its own body. */
+    KontextRequest(Builder<?, ?> b) {
+        this.model = b.model;
+        this.endpoint = Objects.requireNonNull(b.endpoint, "endpoint");
+        this.template = b.template;
+        this.params = Collections.unmodifiableMap(new LinkedHashMap<>(b.params));
+        this.priority = b.priority;
+        this.deadline = b.deadline;
+        this.inputStrategy = b.inputStrategy;
+    }
+
+    /** "edit" | "fill" | "generate" | "expand" */
+    public String getModel() {
+        return model;
+    }
+
+    /** Endpoint the request is sent to. */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /** Template this request was built from, or null. */
+    public KontextTemplate getTemplate() {
+        return template;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /** Time from submission after which the task is given up, or null for the client's max wait only. */
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    /** How inputs are sent, or null for the client's {@link Kontext4J#setInputStrategy}. */
+    public InputStrategy getInputStrategy() {
+        return inputStrategy;
+    }
+
+    public String getPrompt() {
+        return (String) param("prompt");
+    }
+
+    public String getNegativePrompt() {
+        return (String) param("negative_prompt");
+    }
+
+    public Integer getSeed() {
+        return intParam("seed");
+    }
+
+    public Integer getSteps() {
+        return intParam("steps");
+    }
+
+    public Double getGuidance() {
+        return doubleParam("guidance");
+    }
+
+    public Boolean getPromptUpsampling() {
+        return (Boolean) param("prompt_upsampling");
+    }
+
+    public Integer getSafetyTolerance() {
+        return intParam("safety_tolerance");
+    }
+
+    public String getOutputFormat() {
+        return (String) param("output_format");
+    }
+
+    public String getWebhookUrl() {
+        return (String) param("webhook_url");
+    }
+
+    public String getWebhookSecret() {
+        return (String) param("webhook_secret");
+    }
+
+    public Integer getNumOutputs() {
+        return intParam("num_outputs");
+    }
+
+    /** Numbers set through {@link Builder#param} or decoded from JSON may be any Number type. */
+    private Integer intParam(String key) {
+        Object v = param(key);
+        return v == null ? null : ((Number) v).intValue();
+    }
+
+    private Double doubleParam(String key) {
+        Object v = param(key);
+        return v == null ? null : ((Number) v).doubleValue();
+    }
+
+    /** A JSON field of this request (its own or the template's), or null. */
+    Object param(String key) {
+        Object v = params.get(key);
+        return v != null || template == null ? v : template.getFields().get(key);
+    }
+
+    /** Body holding the template prefix and this request's own JSON fields; images are added by the caller. */
+    RequestBody newBody() {
+        RequestBody body = new RequestBody(template);
+        for (Map.Entry<String, Object> e : params.entrySet()) body.put(e.getKey(), e.getValue());
+        return body;
+    }
+
+    /** Builds the request body against a client (its cache, encoding settings, ...). */
+    abstract RequestBody body(Kontext4J client) throws IOException, InterruptedException;
+
+    @Override
+    public String toString() {
+        return "KontextRequest[" + model + "]";
+    }
+
+    // ----------------------
+    // Builder
+    // ----------------------
+
+    /**
+     * Fields every endpoint accepts. A builder made from a template only takes the fields the template left
+     * open: setting one it fixed throws {@link IllegalStateException}, as the JSON for it is already written.
+     */
+    public abstract static class Builder<R extends KontextRequest, B extends Builder<R, B>> {
+        final String model;
+        final KontextTemplate template;
+        final Map<String, Object> params = new LinkedHashMap<>();
+        String endpoint;
+        Priority priority = Priority.NORMAL;
+        Duration deadline;
+        InputStrategy inputStrategy;
+
+        Builder(String model, String endpoint, KontextTemplate template) {
+            if (template != null && !template.getModel().equals(model)) {
+                throw new IllegalArgumentException("Template is for " + template.getModel() + ", not " + model);
+            }
+            this.model = model;
+            this.template = template;
+            this.endpoint = template != null ? template.getEndpoint() : endpoint;
+        }
+
+        /** Send to another endpoint, e.g. {@code https://api.bfl.ai/v1/flux-kontext-max}. */
+        public B endpoint(String endpoint) {
+            if (template != null) throw new IllegalStateException("endpoint is fixed by the template");
+            this.endpoint = Objects.requireNonNull(endpoint, "endpoint");
+            return self();
+        }
+
+        /** Order among waiting work (default {@link Priority#NORMAL}); not sent to the API. */
+        public B priority(Priority priority) {
+            this.priority = Objects.requireNonNull(priority, "priority");
+            return self();
+        }
+
+        /**
+         * Give up on the task this long after it was submitted, including time spent waiting for a rate-limiter
+         * permit and retries; it fails with an IOException. The client's {@link Kontext4J#setMaxWaitMillis} still
+         * applies. Null removes the deadline.
+         */
+        public B deadline(Duration deadline) {
+            if (deadline != null && (deadline.isNegative() || deadline.isZero())) {
+                throw new IllegalArgumentException("deadline must be > 0");
+            }
+            this.deadline = deadline;
+            return self();
+        }
+
+        /** Inline, pass through or stage this request's inputs; null uses the client's setting. Not sent to the API. */
+        public B inputStrategy(InputStrategy inputStrategy) {
+            this.inputStrategy = inputStrategy;
+            return self();
+        }
+
+        public B prompt(String prompt) {
+            return set("prompt", prompt);
+        }
+
+        public B negativePrompt(String negativePrompt) {
+            return set("negative_prompt", negativePrompt);
+        }
+
+        public B seed(Integer seed) {
+            return set("seed", seed);
+        }
+
+        public B steps(Integer steps) {
+            return set("steps", steps);
+        }
+
+        public B guidance(Double guidance) {
+            return set("guidance", guidance);
+        }
+
+        public B promptUpsampling(Boolean promptUpsampling) {
+            return set("prompt_upsampling", promptUpsampling);
+        }
+
+        public B safetyTolerance(Integer safetyTolerance) {
+            return set("safety_tolerance", safetyTolerance);
+        }
+
+        /** "jpeg" | "png" */
+        public B outputFormat(String outputFormat) {
+            return set("output_format", outputFormat);
+        }
+
+        public B webhookUrl(String webhookUrl) {
+            return set("webhook_url", webhookUrl);
+        }
+
+        public B webhookSecret(String webhookSecret) {
+            return set("webhook_secret", webhookSecret);
+        }
+
+        public B numOutputs(Integer numOutputs) {
+            return set("num_outputs", numOutputs);
+        }
+
+        /** Any other JSON field, e.g. one the API added after this version; null clears it. */
+        public B param(String key, Object value) {
+            return set(Objects.requireNonNull(key, "key"), value);
+        }
+
+        /** Sets (or, with null, clears) a JSON field. */
+        B set(String key, Object value) {
+            if (value == null) {
+                params.remove(key);
+                return self();
+            }
+            if (template != null && template.getFields().containsKey(key)) {
+                throw new IllegalStateException(key + " is fixed by the template");
+            }
+            params.put(key, value);
+            return self();
+        }
+
+        /** The positional parameters shared by all four factories; nulls leave a field unset. */
+        B common(String prompt, String negativePrompt, Integer seed, Integer steps, Double guidance,
+                 Boolean promptUpsampling, Integer safetyTolerance, String outputFormat,
+                 String webhookUrl, String webhookSecret, Integer numOutputs) {
+            return prompt(prompt).negativePrompt(negativePrompt).seed(seed).steps(steps).guidance(guidance)
+                    .promptUpsampling(promptUpsampling).safetyTolerance(safetyTolerance).outputFormat(outputFormat)
+                    .webhookUrl(webhookUrl).webhookSecret(webhookSecret).numOutputs(numOutputs);
+        }
+
+        /**
+         * Freeze the endpoint and fields set so far into a reusable template, serialized to JSON once.
+         * Images are per call and can't be part of a template.
+         */
+        public KontextTemplate toTemplate() {
+            if (hasInputs()) throw new IllegalStateException("Images can't be part of a template; set them per request");
+            Map<String, Object> fields = new LinkedHashMap<>();
+            if (template != null) fields.putAll(template.getFields());
+            fields.putAll(params);
+            return new KontextTemplate(model, endpoint, fields);
+        }
+
+        abstract B self();
+
+        /** True if any image (or other per-call input) is set. */
+        abstract boolean hasInputs();
+
+        public abstract R build();
+    }
+
+    // ----------------------
+    // Factories
+    // ----------------------
+
+    /** Same parameters as {@link Kontext4J#edit}. */
+    public static KontextRequest edit(
+            String inputImage1, String inputImage2, String inputImage3, String inputImage4,
+            String prompt, String negativePrompt, String aspectRatio, Integer seed, Integer steps,
+            Double guidance, Boolean promptUpsampling, Integer safetyTolerance, String outputFormat,
+            String webhookUrl, String webhookSecret, Integer numOutputs
+    ) {
+        return EditRequest.builder()
+                .image(1, inputImage1).image(2, inputImage2).image(3, inputImage3).image(4, inputImage4)
+                .aspectRatio(aspectRatio)
+                .common(prompt, negativePrompt, seed, steps, guidance, promptUpsampling, safetyTolerance,
+                        outputFormat, webhookUrl, webhookSecret, numOutputs)
+                .build();
+    }
+
+    /** Same parameters as {@link Kontext4J#fill}. */
+    public static KontextRequest fill(
+            String inputImage, String maskImage, String maskMode,
+            String prompt, String negativePrompt, String aspectRatio, Integer seed, Integer steps,
+            Double guidance, Boolean promptUpsampling, Integer safetyTolerance, String outputFormat,
+            String webhookUrl, String webhookSecret, Integer numOutputs
+    ) {
+        return FillRequest.builder()
+                .image(inputImage).mask(maskImage).maskMode(maskMode).aspectRatio(aspectRatio)
+                .common(prompt, negativePrompt, seed, steps, guidance, promptUpsampling, safetyTolerance,
+                        outputFormat, webhookUrl, webhookSecret, numOutputs)
+                .build();
+    }
+
+    /** Same parameters as {@link Kontext4J#generate}. */
+    public static KontextRequest generate(
+            String prompt, String negativePrompt, String aspectRatio, Integer seed, Integer steps,
+            Double guidance, Boolean promptUpsampling, Integer safetyTolerance, String outputFormat,
+            String webhookUrl, String webhookSecret, Integer numOutputs,
+            List<String> referenceImages, Object extraLoraScale, Object extraReference
+    ) {
+        return GenerateRequest.builder()
+                .aspectRatio(aspectRatio).referenceImages(referenceImages)
+                .extraLoraScale(extraLoraScale).extraReference(extraReference)
+                .common(prompt, negativePrompt, seed, steps, guidance, promptUpsampling, safetyTolerance,
+                        outputFormat, webhookUrl, webhookSecret, numOutputs)
+                .build();
+    }
+
+    /** Text-to-image with defaults for everything but the prompt. */
+    public static KontextRequest generate(String prompt) {
+        return GenerateRequest.builder().prompt(prompt).build();
+    }
+
+    /** Same parameters as {@link Kontext4J#expand}. */
+    public static KontextRequest expand(
+            String inputImage, int top, int bottom, int left, int right,
+            String prompt, String negativePrompt, Integer seed, Integer steps,
+            Double guidance, Boolean promptUpsampling, Integer safetyTolerance, String outputFormat,
+            String webhookUrl, String webhookSecret, Integer numOutputs
+    ) {
+        return ExpandRequest.builder()
+                .image(inputImage).margins(top, bottom, left, right)
+                .common(prompt, negativePrompt, seed, steps, guidance, promptUpsampling, safetyTolerance,
+                        outputFormat, webhookUrl, webhookSecret, numOutputs)
+                .build();
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.initio.kontext4j;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONObject;
+
+/**
+ * Immutable outcome of a single Kontext task: result URLs, final raw JSON, task id and timings.
+ *
+ * Every call produces its own instance, so results can be handed across threads freely.
+ * The blocking API keeps the last one per thread (see {@link Kontext4J#getLastResult()}),
+ * the async API returns it directly.
+ */
+public final class KontextResult {
+
+    private final List<String> urls;
+    private final TaskResponse raw;
+    private final String taskId;
+    private final String endpoint;
+    private final String model;
+    private final long submittedAt;
+    private final long createdAt;
+    private final long completedAt;
+    private final int polls;
+    private final long inputBytesSaved;
+
+    KontextResult(List<String> urls, TaskResponse raw, String taskId, String endpoint, String model,
+                  long submittedAt, long createdAt, long completedAt, int polls, long inputBytesSaved) {
+        this.urls = Collections.unmodifiableList(urls);
+        this.raw = raw;
+        this.taskId = taskId;
+        this.endpoint = endpoint;
+        this.model = model;
+        this.submittedAt = submittedAt;
+        this.createdAt = createdAt;
+        this.completedAt = completedAt;
+        this.polls = polls;
+        this.inputBytesSaved = inputBytesSaved;
+    }
+
+    /** All result URLs, in the order the API returned them. */
+    public List<String> getUrls() {
+        return urls;
+    }
+
+    /** Last result URL, or null if the task produced none. */
+    public String getUrl() {
+        if (urls.isEmpty()) return null;
+        return urls.get(urls.size() - 1);
+    }
+
+    /** Final JSON returned by the API (inline result or last poll response), parsed on first call. Do not mutate. */
+    public JSONObject getRaw() {
+        return raw == null ? null : raw.json();
+    }
+
+    /** The final JSON as the API sent it, unparsed; null if none. */
+    String getRawText() {
+        return raw == null ? null : raw.text();
+    }
+
+    /** Task id assigned by the API, or null if the response had none. */
+    public String getTaskId() {
+        return taskId;
+    }
+
+    /** Endpoint the task was submitted to. */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /** Model the task was submitted as ("edit", "fill", "generate", "expand"). */
+    public String getModel() {
+        return model;
+    }
+
+    /** Epoch millis when the task was submitted. */
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    /** Epoch millis when the result was available. */
+    public long getCompletedAt() {
+        return completedAt;
+    }
+
+    /** Time spent in the task creation POST. */
+    public long getSubmitMillis() {
+        return createdAt - submittedAt;
+    }
+
+    /** Time from task creation until the result was available (queue + processing + polling). */
+    public long getWaitMillis() {
+        return completedAt - createdAt;
+    }
+
+    /** End-to-end time from submission until the result was available. */
+    public long getTotalMillis() {
+        return completedAt - submittedAt;
+    }
+
+    /** Number of polls it took; 0 for inline results. */
+    public int getPollCount() {
+        return polls;
+    }
+
+    /** Upload bytes saved by the {@link ImagePreprocessor} for this call (0 when none is set). */
+    public long getInputBytesSaved() {
+        return inputBytesSaved;
+    }
+
+    @Override
+    public String toString() {
+        return "KontextResult{taskId=" + taskId + ", urls=" + urls + ", totalMillis=" + getTotalMillis()
+                + ", polls=" + polls + "}";
+    }
+}
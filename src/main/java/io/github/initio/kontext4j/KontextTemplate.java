@@ -0,0 +1,60 @@
+package io.github.initio.kontext4j;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Settings shared by many requests (endpoint, guidance, steps, output format, safety tolerance, ...),
+ * serialized to JSON once. Requests built from it only write their own fields (prompt, images, seed) at send time.
+ *
+ * <pre>
+ * KontextTemplate hq = GenerateRequest.builder()
+ *         .guidance(3.5).steps(28).outputFormat("png").safetyTolerance(2)
+ *         .toTemplate();
+ *
+ * for (String p : prompts) k.submit(GenerateRequest.builder(hq).prompt(p).seed(42).build());
+ * </pre>
+ *
+ * Immutable and thread-safe. Values are captured when the template is created; mutable values
+ * (e.g. a JSONObject passed as extraReference) must not change afterwards.
+ */
+public final class KontextTemplate {
+
+    private final String model;
+    private final String endpoint;
+    private final Map<String, Object> fields;
+    private final byte[] prefix;
+
+    KontextTemplate(String model, String endpoint, Map<String, Object> fields) {
+        this.model = Objects.requireNonNull(model, "model");
+        this.endpoint = Objects.requireNonNull(endpoint, "endpoint");
+        this.fields = Collections.unmodifiableMap(new LinkedHashMap<>(fields));
+        this.prefix = RequestBody.prefix(this.fields);
+    }
+
+    /** "edit" | "fill" | "generate" | "expand" */
+    public String getModel() {
+        return model;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /** JSON fields fixed by this template, in serialization order. */
+    public Map<String, Object> getFields() {
+        return fields;
+    }
+
+    /** The fixed fields as an unterminated JSON object ({@code {"guidance":3.5,"steps":28}), shared by every body. */
+    byte[] prefix() {
+        return prefix;
+    }
+
+    @Override
+    public String toString() {
+        return "KontextTemplate[" + model + " " + fields.keySet() + "]";
+    }
+}
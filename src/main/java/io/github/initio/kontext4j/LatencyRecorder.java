@@ -0,0 +1,142 @@
+package io.github.initio.kontext4j;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default {@link KontextListener}: latency histograms per endpoint and model, no dependencies.
+ *
+ * <pre>
+ * LatencyRecorder metrics = new LatencyRecorder();
+ * k.addListener(metrics);
+ * ...
+ * System.out.println(metrics);   // one line per endpoint/model/metric with p50/p90/p99/max
+ * </pre>
+ *
+ * All values are millis except {@link Metric#POLLS}, which counts polls per task.
+ */
+public class LatencyRecorder implements KontextListener {
+
+    public enum Metric {
+        /** Creation POST, including rate-limiter admission and retries. */
+        SUBMIT,
+        /** Time the task was reported as Pending (queued/processing at BFL). */
+        QUEUE,
+        /** Creation until the result was seen. */
+        WAIT,
+        /** Submission until the result was seen. */
+        TOTAL,
+        /** Round trip of a single poll. */
+        POLL,
+        /** Polls needed per completed task. */
+        POLLS
+    }
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final LatencyHistogram downloads = new LatencyHistogram();
+    private final LongAdder downloadedBytes = new LongAdder();
+
+    /** Histogram for one endpoint/model/metric, or null if nothing was recorded for that endpoint and model. */
+    public LatencyHistogram getHistogram(String endpoint, String model, Metric metric) {
+        Stats s = stats.get(key(endpoint, model));
+        return s == null ? null : s.histograms[metric.ordinal()];
+    }
+
+    public long getCompleted(String endpoint, String model) {
+        Stats s = stats.get(key(endpoint, model));
+        return s == null ? 0 : s.completed.sum();
+    }
+
+    public long getFailed(String endpoint, String model) {
+        Stats s = stats.get(key(endpoint, model));
+        return s == null ? 0 : s.failed.sum();
+    }
+
+    /** Per-file download times, all endpoints. */
+    public LatencyHistogram getDownloadHistogram() {
+        return downloads;
+    }
+
+    public long getDownloadedBytes() {
+        return downloadedBytes.sum();
+    }
+
+    // ----------------------
+    // KontextListener
+    // ----------------------
+    @Override
+    public void onCreated(Task task, long submitMillis) {
+        stats(task).record(Metric.SUBMIT, submitMillis);
+    }
+
+    @Override
+    public void onPoll(Task task, String status, long latencyMillis) {
+        stats(task).record(Metric.POLL, latencyMillis);
+    }
+
+    @Override
+    public void onCompleted(Task task, KontextResult result) {
+        Stats s = stats(task);
+        s.completed.increment();
+        s.record(Metric.WAIT, result.getWaitMillis());
+        s.record(Metric.TOTAL, result.getTotalMillis());
+        s.record(Metric.POLLS, result.getPollCount());
+        long queued = task.millisInStatus("Pending");
+        if (queued >= 0) s.record(Metric.QUEUE, queued);
+    }
+
+    @Override
+    public void onFailed(Task task, Throwable error) {
+        stats(task).failed.increment();
+    }
+
+    @Override
+    public void onDownloaded(String url, Path target, long bytes, long millis) {
+        downloads.record(millis);
+        if (bytes > 0) downloadedBytes.add(bytes);
+    }
+
+    /** One line per endpoint/model/metric, sorted. */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Stats> e : new TreeMap<>(stats).entrySet()) {
+            Stats s = e.getValue();
+            sb.append(e.getKey()).append(" completed=").append(s.completed.sum())
+                    .append(" failed=").append(s.failed.sum()).append('\n');
+            for (Metric m : Metric.values()) {
+                LatencyHistogram h = s.histograms[m.ordinal()];
+                if (h.getCount() > 0) sb.append("  ").append(m).append(' ').append(h).append('\n');
+            }
+        }
+        if (downloads.getCount() > 0) {
+            sb.append("downloads bytes=").append(downloadedBytes.sum()).append(' ').append(downloads).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private Stats stats(Task task) {
+        return stats.computeIfAbsent(key(task.endpoint(), task.model()), k -> new Stats());
+    }
+
+    private static String key(String endpoint, String model) {
+        return endpoint + " [" + model + "]";
+    }
+
+    private static final class Stats {
+        final LatencyHistogram[] histograms = new LatencyHistogram[Metric.values().length];
+        final LongAdder completed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+
+        Stats() {
+            for (int i = 0; i < histograms.length; i++) histograms[i] = new LatencyHistogram();
+        }
+
+        void record(Metric metric, long value) {
+            histograms[metric.ordinal()].record(value);
+        }
+    }
+}
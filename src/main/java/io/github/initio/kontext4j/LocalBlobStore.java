@@ -0,0 +1,156 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * {@link BlobStore} that keeps staged inputs in a local directory and serves them over an embedded HTTP server
+ * at {@code <publicBaseUrl>/kontext4j/blobs/<key>}.
+ *
+ * The API must be able to reach {@code publicBaseUrl} (a public host, or a tunnel to this one). Keys are content
+ * hashes, so URLs are unguessable without the image; files persist across restarts and are never deleted here.
+ */
+public final class LocalBlobStore implements BlobStore, AutoCloseable {
+
+    public static final String PATH = "/kontext4j/blobs/";
+
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+
+    private final HttpServer server;
+    private final Path dir;
+    private final String baseUrl;
+
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder served = new LongAdder();
+    private final LongAdder servedBytes = new LongAdder();
+
+    private LocalBlobStore(HttpServer server, Path dir, String publicBaseUrl) {
+        this.server = server;
+        this.dir = dir;
+        this.baseUrl = (publicBaseUrl.endsWith("/") ? publicBaseUrl.substring(0, publicBaseUrl.length() - 1) : publicBaseUrl) + PATH;
+        server.createContext(PATH, this::handle);
+        server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "kontext4j-blob-server");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.start();
+    }
+
+    /**
+     * Bind and start.
+     *
+     * @param bind local address (port 0 picks a free one)
+     * @param publicBaseUrl how the API reaches this host, e.g. "https://files.example.com"; null = http://host:port of the bind address
+     * @param dir directory holding the blobs (created if missing)
+     */
+    public static LocalBlobStore start(InetSocketAddress bind, String publicBaseUrl, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        HttpServer server = HttpServer.create(bind, 0);
+        String base = publicBaseUrl != null ? publicBaseUrl
+                : "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+        return new LocalBlobStore(server, dir, base);
+    }
+
+    /** Bind to {@code port} on all interfaces. */
+    public static LocalBlobStore start(int port, String publicBaseUrl, Path dir) throws IOException {
+        return start(new InetSocketAddress(port), publicBaseUrl, dir);
+    }
+
+    /** Local port actually bound. */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    /** Blobs written (keys already present are not counted). */
+    public long getStored() { return stored.sum(); }
+    /** Successful GETs. */
+    public long getServed() { return served.sum(); }
+    public long getServedBytes() { return servedBytes.sum(); }
+
+    @Override
+    public String put(String key, byte[] data, String contentType) throws IOException {
+        if (!KEY.matcher(key).matches()) throw new IllegalArgumentException("Invalid blob key: " + key);
+        Path file = dir.resolve(key);
+        if (!Files.exists(file)) {
+            // write beside the target and rename, so a concurrent GET never sees half a file
+            Path tmp = Files.createTempFile(dir, ".upload-", ".tmp");
+            try {
+                Files.write(tmp, data);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            stored.increment();
+        }
+        return baseUrl + key;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    // ----------------------
+    // HTTP
+    // ----------------------
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            String method = ex.getRequestMethod();
+            boolean head = "HEAD".equalsIgnoreCase(method);
+            if (!head && !"GET".equalsIgnoreCase(method)) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            String key = ex.getRequestURI().getPath().substring(PATH.length());
+            if (!KEY.matcher(key).matches()) {
+                ex.sendResponseHeaders(404, -1);
+                return;
+            }
+            Path file = dir.resolve(key);
+            long size;
+            try {
+                size = Files.size(file);
+            } catch (NoSuchFileException e) {
+                ex.sendResponseHeaders(404, -1);
+                return;
+            }
+            ex.getResponseHeaders().set("Content-Type", contentType(key));
+            ex.getResponseHeaders().set("Cache-Control", "public, max-age=31536000, immutable");
+            if (head) {
+                ex.getResponseHeaders().set("Content-Length", Long.toString(size));
+                ex.sendResponseHeaders(200, -1);
+                return;
+            }
+            ex.sendResponseHeaders(200, size);
+            try (OutputStream out = ex.getResponseBody()) {
+                Files.copy(file, out);
+            }
+            served.increment();
+            servedBytes.add(size);
+        }
+    }
+
+    private static String contentType(String key) {
+        if (key.endsWith(".png")) return "image/png";
+        if (key.endsWith(".jpg")) return "image/jpeg";
+        if (key.endsWith(".webp")) return "image/webp";
+        return "application/octet-stream";
+    }
+}
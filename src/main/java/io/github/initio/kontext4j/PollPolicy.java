@@ -0,0 +1,50 @@
+package io.github.initio.kontext4j;
+
+import java.util.Map;
+
+/**
+ * Decides how long to wait before the next poll of a pending task.
+ *
+ * The scheduler never waits past the task's deadline, whatever the policy returns.
+ * Implementations must be thread-safe: one policy serves every task of a client.
+ *
+ * @see AdaptivePollPolicy
+ */
+public interface PollPolicy {
+
+    /** Read-only view of a task being polled. Times are millis since the task was created. */
+    interface State {
+        /** Endpoint the task was submitted to. */
+        String endpoint();
+
+        /** Status from the last poll ("" before the first). */
+        String status();
+
+        /** Millis since task creation. */
+        long elapsedMillis();
+
+        /** Millis since creation at which {@code status} was first seen, or -1 if never. */
+        long enteredStatusAtMillis(String status);
+
+        /** Every status seen so far, mapped to when it was first seen (millis since creation). */
+        Map<String, Long> statusHistory();
+
+        /** Polls sent so far. */
+        int polls();
+
+        /** Millis left until the task times out. */
+        long remainingMillis();
+    }
+
+    /** Delay before the next poll, in millis. */
+    long nextDelayMillis(State state);
+
+    /** Called once when a task reaches Ready/Succeeded; lets a policy learn from completions. */
+    default void onComplete(State state) {}
+
+    /** Poll every {@code intervalMillis}, regardless of endpoint or history. */
+    static PollPolicy fixed(long intervalMillis) {
+        if (intervalMillis < 0) throw new IllegalArgumentException("intervalMillis must be >= 0");
+        return state -> intervalMillis;
+    }
+}
@@ -0,0 +1,216 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One delay queue that owns every pending task of one or more {@link Kontext4J} clients.
+ *
+ * - A single dispatcher thread takes tasks as their next poll becomes due
+ * - Poll spacing comes from each task's {@link PollPolicy}, plus +/- jitter so tasks submitted
+ *   together don't poll in lockstep, and never runs past the task's deadline
+ * - At most maxInFlight polls are outstanding at once; due tasks wait for a free slot and get it
+ *   by {@link Priority}, then in due order
+ * - A task's future completes on Ready/Succeeded, fails on Failed/error or timeout
+ *
+ * Exposes queue-depth and poll-rate metrics. By default all clients share {@link #shared()}.
+ */
+public final class PollScheduler implements AutoCloseable {
+
+    private static final int RATE_WINDOW_SECONDS = 10;
+
+    private static volatile PollScheduler shared;
+
+    private static final Comparator<PollTask> READY_ORDER = Comparator
+            .<PollTask>comparingInt(t -> t.priority.ordinal()).thenComparingLong(t -> t.nextPollAtNanos);
+
+    private final DelayQueue<PollTask> queue = new DelayQueue<>();
+    // Due tasks waiting for a slot; only the dispatcher adds to it
+    private final PriorityBlockingQueue<PollTask> ready = new PriorityBlockingQueue<>(16, READY_ORDER);
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final double jitter;
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    // Metrics
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder totalPolls = new LongAdder();
+    private final AtomicLongArray rateBuckets = new AtomicLongArray(RATE_WINDOW_SECONDS);
+    private final AtomicLongArray rateBucketSecond = new AtomicLongArray(RATE_WINDOW_SECONDS);
+
+    /**
+     * @param maxInFlight max concurrent poll requests
+     * @param jitter fraction of the poll interval to randomize, e.g. 0.2 for +/-20%
+     */
+    public PollScheduler(int maxInFlight, double jitter) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be >= 1");
+        if (jitter < 0 || jitter >= 1) throw new IllegalArgumentException("jitter must be in [0, 1)");
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.jitter = jitter;
+        this.dispatcher = new Thread(this::dispatchLoop, "kontext4j-poll-scheduler");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /** Default scheduler shared by clients that don't set their own: 64 polls in flight, +/-20% jitter. */
+    public static PollScheduler shared() {
+        PollScheduler s = shared;
+        if (s == null) {
+            synchronized (PollScheduler.class) {
+                s = shared;
+                if (s == null) shared = s = new PollScheduler(64, 0.2);
+            }
+        }
+        return s;
+    }
+
+    // ----------------------
+    // Metrics
+    // ----------------------
+
+    /** Tasks waiting for their next poll (including due ones waiting for a slot). */
+    public int getQueueDepth() {
+        return queue.size() + ready.size();
+    }
+
+    /** Poll requests currently outstanding. */
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /** Tasks submitted and not yet completed. */
+    public int getPendingTasks() {
+        return pending.get();
+    }
+
+    /** Poll requests sent since creation. */
+    public long getTotalPolls() {
+        return totalPolls.sum();
+    }
+
+    /** Average polls per second over the last 10 seconds. */
+    public double getPollsPerSecond() {
+        long now = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        long sum = 0;
+        for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+            if (now - rateBucketSecond.get(i) < RATE_WINDOW_SECONDS) sum += rateBuckets.get(i);
+        }
+        return sum / (double) RATE_WINDOW_SECONDS;
+    }
+
+    // ----------------------
+    // Scheduling
+    // ----------------------
+
+    /** Start polling a created task; its {@code done} future completes when polling ends. */
+    void submit(PollTask task) {
+        if (closed) {
+            task.done.completeExceptionally(new IllegalStateException("PollScheduler is closed"));
+            return;
+        }
+        pending.incrementAndGet();
+        task.done.whenComplete((r, e) -> {
+            pending.decrementAndGet();
+            queue.remove(task); // no-op unless cancelled while waiting
+            ready.remove(task);
+        });
+        task.nextPollAtNanos = System.nanoTime(); // first poll right away
+        queue.add(task);
+    }
+
+    private void reschedule(PollTask task) {
+        long delay = task.policy.nextDelayMillis(task);
+        if (jitter > 0 && delay > 0) {
+            delay += Math.round(delay * jitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1));
+        }
+        // deadline aware: the last poll lands on the deadline, not after it
+        delay = Math.min(delay, task.remainingMillis() + 1);
+        task.nextPollAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay));
+        if (!task.done.isDone()) queue.add(task);
+    }
+
+    private void dispatchLoop() {
+        while (!closed) {
+            try {
+                if (ready.isEmpty()) ready.add(queue.take());
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                if (closed) return;
+                continue;
+            }
+            // everything that came due while waiting for the slot competes for it
+            queue.drainTo(ready);
+            PollTask task = ready.poll();
+            if (task == null || task.done.isDone()) {
+                inFlight.release();
+                continue;
+            }
+            dispatch(task);
+        }
+    }
+
+    private void dispatch(PollTask task) {
+        recordPoll();
+        task.polls++;
+        try {
+            task.poller.poll(task).whenComplete((json, err) -> {
+                inFlight.release();
+                if (err != null) {
+                    task.done.completeExceptionally(Kontext4J.unwrap(err));
+                    return;
+                }
+                handle(task, json);
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            task.done.completeExceptionally(e);
+        }
+    }
+
+    private void handle(PollTask task, TaskResponse jr) {
+        if (task.settle(jr)) return;
+        if (task.elapsedMillis() > task.maxWaitMillis) {
+            task.done.completeExceptionally(
+                    new IOException("Polling timed out after " + task.maxWaitMillis + "ms; last status=" + task.status));
+            return;
+        }
+        reschedule(task);
+    }
+
+    private void recordPoll() {
+        totalPolls.increment();
+        long sec = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        int i = (int) Math.floorMod(sec, (long) RATE_WINDOW_SECONDS);
+        long prev = rateBucketSecond.get(i);
+        if (prev != sec && rateBucketSecond.compareAndSet(i, prev, sec)) rateBuckets.set(i, 0);
+        rateBuckets.incrementAndGet(i);
+    }
+
+    /** Stop dispatching and fail every task still waiting. */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        for (PollTask t : queue) {
+            t.done.completeExceptionally(new IllegalStateException("PollScheduler closed"));
+        }
+        for (PollTask t : ready) {
+            t.done.completeExceptionally(new IllegalStateException("PollScheduler closed"));
+        }
+        queue.clear();
+        ready.clear();
+        synchronized (PollScheduler.class) {
+            if (shared == this) shared = null;
+        }
+    }
+}
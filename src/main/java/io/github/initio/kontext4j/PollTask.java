@@ -0,0 +1,151 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State of one submitted task while it is being polled. Owned by a {@link PollScheduler};
+ * only one poll per task is ever in flight, so plain volatile fields are enough.
+ */
+final class PollTask implements Delayed, KontextListener.Task {
+
+    /** Performs one poll and returns the scanned response (fails on HTTP/JSON errors). */
+    @FunctionalInterface
+    interface Poller {
+        CompletableFuture<TaskResponse> poll(PollTask task);
+    }
+
+    final String model;
+    final String endpoint;
+    final long submittedAt = System.currentTimeMillis();
+    final CompletableFuture<KontextResult> done = new CompletableFuture<>();
+
+    volatile long createdAt;
+    volatile String id;
+    volatile String pollingUrl;
+    volatile String webhookRef;
+    volatile int polls;
+    volatile long inputBytesSaved;
+    volatile String status = "";
+    volatile Priority priority = Priority.NORMAL;
+    private final Map<String, Long> statusHistory = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    // Set when handed to the scheduler
+    volatile Poller poller;
+    volatile PollPolicy policy;
+    volatile long maxWaitMillis;
+    volatile long nextPollAtNanos;
+
+    PollTask(String model, String endpoint) {
+        this.model = model;
+        this.endpoint = endpoint;
+    }
+
+    void updateStatus(String status) {
+        this.status = status;
+        statusHistory.putIfAbsent(status, elapsedMillis());
+    }
+
+    // ----------------------
+    // KontextListener.Task / PollPolicy.State
+    // ----------------------
+    @Override
+    public String model() {
+        return model;
+    }
+
+    @Override
+    public String taskId() {
+        return id;
+    }
+
+    @Override
+    public long submittedAt() {
+        return submittedAt;
+    }
+
+    @Override
+    public String endpoint() {
+        return endpoint;
+    }
+
+    @Override
+    public String status() {
+        return status;
+    }
+
+    @Override
+    public long elapsedMillis() {
+        return createdAt == 0 ? 0 : System.currentTimeMillis() - createdAt;
+    }
+
+    @Override
+    public long enteredStatusAtMillis(String status) {
+        Long at = statusHistory.get(status);
+        return at == null ? -1 : at;
+    }
+
+    @Override
+    public Map<String, Long> statusHistory() {
+        synchronized (statusHistory) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(statusHistory));
+        }
+    }
+
+    @Override
+    public int polls() {
+        return polls;
+    }
+
+    @Override
+    public long remainingMillis() {
+        return maxWaitMillis - elapsedMillis();
+    }
+
+    /**
+     * Apply a status payload (poll response or webhook callback). Completes the task and returns true
+     * on Ready/Succeeded or on failure; returns false while the task is still pending.
+     */
+    boolean settle(TaskResponse jr) {
+        if (done.isDone()) return true; // webhook and poll may race
+        String status = jr.status;
+        updateStatus(status);
+        if ("Ready".equalsIgnoreCase(status) || "Succeeded".equalsIgnoreCase(status) || "Success".equalsIgnoreCase(status)) {
+            try {
+                policy.onComplete(this);
+            } catch (RuntimeException ignored) {
+                // a misbehaving policy must not lose the result
+            }
+            done.complete(toResult(jr));
+            return true;
+        }
+        // handle immediate error
+        if (jr.hasError || "Failed".equalsIgnoreCase(status) || "Error".equalsIgnoreCase(status)
+                || "Task not found".equalsIgnoreCase(status)) {
+            done.completeExceptionally(new IOException("Task failed during polling: " + jr.text()));
+            return true;
+        }
+        return false;
+    }
+
+    KontextResult toResult(TaskResponse response) {
+        return new KontextResult(response.urls(), response, id, endpoint, model,
+                submittedAt, createdAt, System.currentTimeMillis(), polls, inputBytesSaved);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(nextPollAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+        if (o instanceof PollTask) return Long.compare(nextPollAtNanos, ((PollTask) o).nextPollAtNanos);
+        return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+    }
+}
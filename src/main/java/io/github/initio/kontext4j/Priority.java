@@ -0,0 +1,19 @@
+package io.github.initio.kontext4j;
+
+/**
+ * Scheduling class of a request, set with {@link KontextRequest.Builder#priority}.
+ *
+ * - Waiting for a {@link RateLimiter} permit, higher classes go first (FIFO within a class)
+ * - When more polls are due than the {@link PollScheduler} has slots, higher classes are polled first
+ * - {@link KontextBatch} starts its requests in priority order
+ *
+ * Priority only decides the order of waiting work; it never preempts a task already running.
+ */
+public enum Priority {
+    /** A user is waiting for this one. */
+    INTERACTIVE,
+    /** Default. */
+    NORMAL,
+    /** Bulk work that can wait for everything else. */
+    BATCH
+}
@@ -0,0 +1,19 @@
+package io.github.initio.kontext4j;
+
+/** The API answered HTTP 429 on task creation; nothing was created, the request can be resent. */
+public class RateLimitedException extends KontextHttpException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    public RateLimitedException(String message, long retryAfterMillis) {
+        super(message, 429);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /** Server-suggested wait (Retry-After), or a default when the header was missing. */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,162 @@
+package io.github.initio.kontext4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket for task creation, shared by every call on a client (including batches).
+ *
+ * - {@code permitsPerSecond} sustained rate, {@code burst} tokens saved up while idle
+ * - On HTTP 429 the whole bucket pauses for Retry-After and the rate halves
+ * - Every accepted request wins back 5% of the configured rate (AIMD)
+ *
+ * Reservation is non-blocking: callers get the delay to wait and schedule themselves. The client itself
+ * queues its task creations here by {@link Priority}, so interactive requests overtake queued bulk work.
+ */
+public final class RateLimiter {
+
+    private static final double MIN_FRACTION = 0.05;
+
+    private final double maxRate;
+    private final double burst;
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private long pausedUntilNanos;
+
+    // Creations waiting for a permit, highest priority first
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+            Comparator.<Waiter>comparingInt(w -> w.priority.ordinal()).thenComparingLong(w -> w.seq));
+    private long nextSeq;
+    private boolean drainScheduled;
+
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) throw new IllegalArgumentException("permitsPerSecond must be > 0");
+        if (burst < 1) throw new IllegalArgumentException("burst must be >= 1");
+        this.maxRate = permitsPerSecond;
+        this.rate = permitsPerSecond;
+        this.burst = burst;
+        this.tokens = burst;
+    }
+
+    /** Take one permit; returns how many millis the caller must wait before using it (0 = now). */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        refill(now);
+        long waitNanos = Math.max(0, pausedUntilNanos - now);
+        tokens -= 1;
+        if (tokens < 0) waitNanos = Math.max(waitNanos, (long) (-tokens / rate * 1e9));
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999);
+    }
+
+    /** Called on HTTP 429: pause everyone for {@code retryAfterMillis} and halve the rate. */
+    public synchronized void onRateLimited(long retryAfterMillis) {
+        long now = System.nanoTime();
+        refill(now);
+        pausedUntilNanos = Math.max(pausedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+        rate = Math.max(maxRate * MIN_FRACTION, rate / 2);
+        tokens = Math.min(tokens, 0);
+    }
+
+    /** Called when a task was accepted; slowly restores the configured rate. */
+    public synchronized void onSuccess() {
+        rate = Math.min(maxRate, rate + maxRate * MIN_FRACTION);
+    }
+
+    /** Creations waiting in the priority queue. */
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    /** Current permitted rate (may be below the configured one after 429s). */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    // ----------------------
+    // Priority queue
+    // ----------------------
+
+    /**
+     * Wait in line for a permit: higher priority first, FIFO within a priority. A waiter whose {@code owner}
+     * completed (cancelled, deadline passed) leaves the line without using a permit; its future fails with CancellationException.
+     */
+    CompletableFuture<Void> acquire(Priority priority, CompletableFuture<?> owner) {
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        Waiter w;
+        synchronized (this) {
+            w = new Waiter(priority, nextSeq++, owner, permit);
+            waiters.add(w);
+        }
+        // a cancelled caller leaves the queue now, not when it reaches the head (it may hold a breaker trial)
+        owner.whenComplete((x, e) -> {
+            boolean removed;
+            synchronized (this) {
+                removed = waiters.remove(w);
+            }
+            if (removed) permit.completeExceptionally(new CancellationException("Task cancelled"));
+        });
+        drain();
+        return permit;
+    }
+
+    /** Hand out the permits available now; schedule another round for when the next one will be. */
+    private void drain() {
+        List<CompletableFuture<Void>> granted = new ArrayList<>();
+        List<CompletableFuture<Void>> dropped = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            refill(now);
+            while (!waiters.isEmpty()) {
+                Waiter w = waiters.peek();
+                if (w.owner.isDone()) {
+                    waiters.poll();
+                    dropped.add(w.permit);
+                } else if (pausedUntilNanos <= now && tokens >= 1) {
+                    waiters.poll();
+                    tokens -= 1;
+                    granted.add(w.permit);
+                } else {
+                    break;
+                }
+            }
+            if (!waiters.isEmpty() && !drainScheduled) {
+                long waitNanos = Math.max(pausedUntilNanos - now, (long) ((1 - tokens) / rate * 1e9));
+                drainScheduled = true;
+                CompletableFuture.delayedExecutor(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1, TimeUnit.MILLISECONDS)
+                        .execute(() -> {
+                            synchronized (this) {
+                                drainScheduled = false;
+                            }
+                            drain();
+                        });
+            }
+        }
+        for (CompletableFuture<Void> f : dropped) f.completeExceptionally(new CancellationException("Task cancelled"));
+        for (CompletableFuture<Void> f : granted) f.complete(null);
+    }
+
+    private static final class Waiter {
+        final Priority priority;
+        final long seq;
+        final CompletableFuture<?> owner;
+        final CompletableFuture<Void> permit;
+
+        Waiter(Priority priority, long seq, CompletableFuture<?> owner, CompletableFuture<Void> permit) {
+            this.priority = priority;
+            this.seq = seq;
+            this.owner = owner;
+            this.permit = permit;
+        }
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * rate);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,273 @@
+package io.github.initio.kontext4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * JSON request body whose image fields are {@link ImageSource}s, streamed and base64-encoded
+ * straight onto the wire. Peak memory per request is one encode chunk, whatever the image size.
+ *
+ * Values may be strings, numbers, booleans, org.json types, ImageSources or Lists of those.
+ * A body made from a {@link KontextTemplate} starts with the template's pre-serialized fields.
+ */
+final class RequestBody {
+
+    private final KontextTemplate template;
+    private final Map<String, Object> fields = new LinkedHashMap<>();
+    private long inputBytesSaved;
+
+    RequestBody() {
+        this(null);
+    }
+
+    /** Body whose JSON starts with the template's fields; null for none. */
+    RequestBody(KontextTemplate template) {
+        this.template = template;
+    }
+
+    /** Adds a field; null values are skipped. Fields fixed by the template can't be set again. */
+    RequestBody put(String key, Object value) {
+        if (value == null) return this;
+        if (template != null && template.getFields().containsKey(key)) {
+            throw new IllegalStateException(key + " is fixed by the template");
+        }
+        fields.put(key, value);
+        return this;
+    }
+
+    Object get(String key) {
+        Object v = fields.get(key);
+        return v != null || template == null ? v : template.getFields().get(key);
+    }
+
+    boolean has(String key) {
+        return fields.containsKey(key) || template != null && template.getFields().containsKey(key);
+    }
+
+    /** Template fields followed by this body's own. */
+    Map<String, Object> fields() {
+        if (template == null) return Collections.unmodifiableMap(fields);
+        Map<String, Object> all = new LinkedHashMap<>(template.getFields());
+        all.putAll(fields);
+        return Collections.unmodifiableMap(all);
+    }
+
+    /** Upload bytes saved by the {@link ImagePreprocessor} while building this body. */
+    long inputBytesSaved() {
+        return inputBytesSaved;
+    }
+
+    void addInputBytesSaved(long n) {
+        inputBytesSaved += n;
+    }
+
+    /** Publisher that re-streams the body on every subscription (so resends work). */
+    HttpRequest.BodyPublisher publisher(Kontext4J client) {
+        List<Object> segments = segments();
+        long length = 0;
+        for (Object seg : segments) {
+            long n = seg instanceof byte[] ? ((byte[]) seg).length : ((ImageSource) seg).base64Length();
+            if (n < 0) {
+                length = -1;
+                break;
+            }
+            length += n;
+        }
+        HttpRequest.BodyPublisher stream = HttpRequest.BodyPublishers.ofInputStream(() -> open(client, segments));
+        return length < 0 ? stream : HttpRequest.BodyPublishers.fromPublisher(stream, length);
+    }
+
+    /** Whole body as one stream; image sources are opened lazily, one at a time. */
+    InputStream open(Kontext4J client) {
+        return open(client, segments());
+    }
+
+    /**
+     * SHA-256 (hex) identifying what this body asks for at {@code endpoint}: fields in key order, images by
+     * content (the same picture as a path, stream or base64 hashes alike; URLs by address). Webhook fields are
+     * delivery details and are left out.
+     */
+    String contentHash(String endpoint, Kontext4J client) throws IOException {
+        MessageDigest md = sha256();
+        md.update(endpoint.getBytes(StandardCharsets.UTF_8));
+        for (Map.Entry<String, Object> e : new TreeMap<>(fields()).entrySet()) {
+            if (e.getKey().equals("webhook_url") || e.getKey().equals("webhook_secret")) continue;
+            md.update((byte) '\n');
+            md.update(e.getKey().getBytes(StandardCharsets.UTF_8));
+            md.update((byte) '=');
+            hashValue(e.getValue(), md, client);
+        }
+        return hex(md.digest());
+    }
+
+    /** True if {@link #contentHash} has to read image bytes (any image but a URL); template fields hold none. */
+    boolean hashReadsImages() {
+        for (Object v : fields.values()) if (readsImage(v)) return true;
+        return false;
+    }
+
+    private static boolean readsImage(Object v) {
+        if (v instanceof ImageSource) return !(v instanceof ImageSource.UrlSource);
+        if (v instanceof List) {
+            for (Object x : (List<?>) v) if (readsImage(x)) return true;
+        }
+        return false;
+    }
+
+    private static void hashValue(Object v, MessageDigest md, Kontext4J client) throws IOException {
+        if (v instanceof ImageSource.UrlSource) {
+            md.update(("url:" + ((ImageSource.UrlSource) v).url).getBytes(StandardCharsets.UTF_8));
+        } else if (v instanceof ImageSource) {
+            MessageDigest img = sha256();
+            byte[] buf = new byte[16 * 1024];
+            try (InputStream in = ((ImageSource) v).openRaw(client)) {
+                int n;
+                while ((n = in.read(buf)) > 0) img.update(buf, 0, n);
+            }
+            md.update(("img:" + hex(img.digest())).getBytes(StandardCharsets.UTF_8));
+        } else if (v instanceof List) {
+            md.update((byte) '[');
+            for (Object x : (List<?>) v) {
+                hashValue(x, md, client);
+                md.update((byte) ',');
+            }
+            md.update((byte) ']');
+        } else {
+            md.update(JSONObject.valueToString(v).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE ships SHA-256
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return sb.toString();
+    }
+
+    /** Debug view; images are shown by description, not content. */
+    @Override
+    public String toString() {
+        JSONObject o = new JSONObject();
+        for (Map.Entry<String, Object> e : fields().entrySet()) o.put(e.getKey(), describe(e.getValue()));
+        return o.toString();
+    }
+
+    private static Object describe(Object v) {
+        if (v instanceof ImageSource) return v.toString();
+        if (v instanceof List) {
+            JSONArray a = new JSONArray();
+            for (Object x : (List<?>) v) a.put(describe(x));
+            return a;
+        }
+        return v;
+    }
+
+    // ----------------------
+    // Serialization
+    // ----------------------
+
+    /** Fixed fields as an unterminated JSON object, for {@link KontextTemplate}; images aren't allowed. */
+    static byte[] prefix(Map<String, Object> fields) {
+        List<Object> out = new ArrayList<>();
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<String, Object> e : fields.entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append(JSONObject.quote(e.getKey())).append(':');
+            writeValue(e.getValue(), sb, out);
+        }
+        if (!out.isEmpty()) throw new IllegalArgumentException("Images can't be part of a template");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Alternating literal JSON bytes and image sources (each written as a JSON string). */
+    private List<Object> segments() {
+        List<Object> out = new ArrayList<>();
+        StringBuilder sb;
+        boolean first;
+        if (template != null) {
+            out.add(template.prefix()); // shared, never written to
+            sb = new StringBuilder();
+            first = template.getFields().isEmpty();
+        } else {
+            sb = new StringBuilder("{");
+            first = true;
+        }
+        for (Map.Entry<String, Object> e : fields.entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append(JSONObject.quote(e.getKey())).append(':');
+            writeValue(e.getValue(), sb, out);
+        }
+        sb.append('}');
+        out.add(sb.toString().getBytes(StandardCharsets.UTF_8));
+        return out;
+    }
+
+    private static void writeValue(Object v, StringBuilder sb, List<Object> out) {
+        if (v instanceof ImageSource) {
+            sb.append('"');
+            out.add(sb.toString().getBytes(StandardCharsets.UTF_8));
+            out.add(v);
+            sb.setLength(0);
+            sb.append('"');
+        } else if (v instanceof List) {
+            sb.append('[');
+            boolean first = true;
+            for (Object x : (List<?>) v) {
+                if (!first) sb.append(',');
+                first = false;
+                writeValue(x, sb, out);
+            }
+            sb.append(']');
+        } else {
+            sb.append(JSONObject.valueToString(v));
+        }
+    }
+
+    private static InputStream open(Kontext4J client, List<Object> segments) {
+        Iterator<Object> it = segments.iterator();
+        return new SequenceInputStream(new java.util.Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return it.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                Object seg = it.next();
+                if (seg instanceof byte[]) return new ByteArrayInputStream((byte[]) seg);
+                try {
+                    return ((ImageSource) seg).openBase64(client);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+}
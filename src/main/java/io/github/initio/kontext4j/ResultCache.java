@@ -0,0 +1,268 @@
+package io.github.initio.kontext4j;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Opt-in cache of finished results for deterministic requests, keyed by the request's content hash
+ * (endpoint + JSON fields, images hashed by content, so a path and the same bytes as base64 match).
+ *
+ * - Only requests with an explicit {@code seed} are cached unless {@link #setRequireSeed}(false)
+ * - Identical requests in flight at the same time share one task (single-flight); it is cancelled only when
+ *   every caller waiting on it cancelled
+ * - Finished results are kept for the TTL, at most {@code maxEntries}, least recently used evicted first
+ * - With {@link #setMaxBytes} &gt; 0, downloaded result files are kept too (LRU within that byte budget),
+ *   so a repeat download is served locally even after the signed URL expired
+ *
+ * Failures are never cached. A cached {@link KontextResult} is the original one (same task id and timings).
+ */
+public final class ResultCache {
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private volatile boolean requireSeed = true;
+    private volatile long maxBytes;
+
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Cached<KontextResult>> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Cached<byte[]>> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long fileBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /** 5 minute TTL (result URLs are signed and expire), 1000 results. */
+    public ResultCache() {
+        this(Duration.ofMinutes(5), 1000);
+    }
+
+    public ResultCache(Duration ttl, int maxEntries) {
+        if (ttl.isNegative() || ttl.isZero()) throw new IllegalArgumentException("ttl must be > 0");
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be >= 1");
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+    }
+
+    /** Cache only requests with an explicit seed (default true); without one the API may return a different image. */
+    public ResultCache setRequireSeed(boolean requireSeed) {
+        this.requireSeed = requireSeed;
+        return this;
+    }
+
+    /** Keep downloaded result files in memory up to this many bytes in total; 0 disables (default). */
+    public ResultCache setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("maxBytes must be >= 0");
+        synchronized (files) {
+            this.maxBytes = maxBytes;
+            evictFiles();
+        }
+        return this;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** Requests that joined an identical task already in flight. */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public int size() {
+        synchronized (results) {
+            return results.size();
+        }
+    }
+
+    public long getCachedBytes() {
+        synchronized (files) {
+            return fileBytes;
+        }
+    }
+
+    public void clear() {
+        synchronized (results) {
+            results.clear();
+        }
+        synchronized (files) {
+            files.clear();
+            fileBytes = 0;
+        }
+    }
+
+    // ----------------------
+    // Results
+    // ----------------------
+
+    boolean accepts(RequestBody body) {
+        return !requireSeed || body.has("seed");
+    }
+
+    /**
+     * Cached result, the in-flight task for the same hash, or a new task from {@code run}. Each caller gets its
+     * own view; the task is cancelled once every view of it was cancelled.
+     */
+    CompletableFuture<KontextResult> get(String hash, Supplier<CompletableFuture<KontextResult>> run) {
+        long now = System.currentTimeMillis();
+        synchronized (results) {
+            Cached<KontextResult> c = results.get(hash);
+            if (c != null && c.expiresAt > now) {
+                hits.increment();
+                return CompletableFuture.completedFuture(c.value);
+            }
+            if (c != null) results.remove(hash);
+        }
+        Flight mine = new Flight();
+        Flight running;
+        while ((running = inFlight.putIfAbsent(hash, mine)) != null) {
+            CompletableFuture<KontextResult> view = running.join();
+            if (view != null) {
+                coalesced.increment();
+                return view;
+            }
+            inFlight.remove(hash, running); // every caller left it; start afresh
+        }
+        synchronized (results) {
+            // an identical task may have finished between the lookup and taking the in-flight slot
+            Cached<KontextResult> c = results.get(hash);
+            if (c != null && c.expiresAt > now) {
+                inFlight.remove(hash, mine);
+                mine.shared.complete(c.value);
+                hits.increment();
+                return CompletableFuture.completedFuture(c.value);
+            }
+        }
+        misses.increment();
+        CompletableFuture<KontextResult> view = mine.view();
+        CompletableFuture<KontextResult> task;
+        try {
+            task = run.get();
+        } catch (RuntimeException e) {
+            task = CompletableFuture.failedFuture(e);
+        }
+        task.whenComplete((r, e) -> {
+            if (e == null) {
+                synchronized (results) {
+                    results.put(hash, new Cached<>(r, System.currentTimeMillis() + ttlMillis));
+                    Iterator<Map.Entry<String, Cached<KontextResult>>> it = results.entrySet().iterator();
+                    while (results.size() > maxEntries && it.hasNext()) {
+                        it.next();
+                        it.remove();
+                    }
+                }
+            }
+            inFlight.remove(hash, mine);
+            if (e != null) mine.shared.completeExceptionally(Kontext4J.unwrap(e));
+            else mine.shared.complete(r);
+        });
+        mine.start(task);
+        return view;
+    }
+
+    /** One task shared by identical requests, with a count of the callers still waiting on it. */
+    private static final class Flight {
+        final CompletableFuture<KontextResult> shared = new CompletableFuture<>();
+        private CompletableFuture<KontextResult> task;
+        private int waiters = 1; // the caller that starts the task
+        private boolean abandoned;
+
+        /** A view for another caller, or null if everyone already left and the task is being cancelled. */
+        synchronized CompletableFuture<KontextResult> join() {
+            if (abandoned) return null;
+            waiters++;
+            return view();
+        }
+
+        /** Callers can't complete or cancel each other's view; cancelling (or completing) one early leaves. */
+        CompletableFuture<KontextResult> view() {
+            CompletableFuture<KontextResult> v = shared.copy();
+            v.whenComplete((r, e) -> {
+                if (!shared.isDone()) leave();
+            });
+            return v;
+        }
+
+        void start(CompletableFuture<KontextResult> t) {
+            boolean cancel;
+            synchronized (this) {
+                task = t;
+                cancel = abandoned;
+            }
+            if (cancel) t.cancel(true);
+        }
+
+        private void leave() {
+            CompletableFuture<KontextResult> t;
+            synchronized (this) {
+                if (--waiters > 0 || shared.isDone()) return;
+                abandoned = true;
+                t = task;
+            }
+            if (t != null) t.cancel(true); // else start() cancels it
+        }
+    }
+
+    // ----------------------
+    // Downloaded files
+    // ----------------------
+
+    boolean keepsFiles() {
+        return maxBytes > 0;
+    }
+
+    byte[] getFile(String url) {
+        synchronized (files) {
+            Cached<byte[]> c = files.get(url);
+            if (c == null) return null;
+            if (c.expiresAt <= System.currentTimeMillis()) {
+                files.remove(url);
+                fileBytes -= c.value.length;
+                return null;
+            }
+            return c.value;
+        }
+    }
+
+    void putFile(String url, byte[] bytes) {
+        synchronized (files) {
+            if (bytes.length > maxBytes) return;
+            Cached<byte[]> old = files.put(url, new Cached<>(bytes, System.currentTimeMillis() + ttlMillis));
+            if (old != null) fileBytes -= old.value.length;
+            fileBytes += bytes.length;
+            evictFiles();
+        }
+    }
+
+    private void evictFiles() {
+        Iterator<Cached<byte[]>> it = files.values().iterator();
+        while (fileBytes > maxBytes && it.hasNext()) {
+            fileBytes -= it.next().value.length;
+            it.remove();
+        }
+    }
+
+    private static final class Cached<T> {
+        final T value;
+        final long expiresAt;
+
+        Cached(T value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/** Async retry loop shared by task creation and polling. */
+final class Retries {
+
+    private Retries() {}
+
+    /**
+     * Run {@code attempt} until it succeeds, fails with a non-retryable error or runs out of attempts.
+     * The breaker (may be null) gates every attempt and records transport errors and 5xx as failures.
+     */
+    static <T> CompletableFuture<T> run(Supplier<CompletableFuture<T>> attempt, RetryPolicy policy,
+                                        Predicate<Throwable> retryable, CircuitBreaker breaker) {
+        return run(null, attempt, policy, retryable, breaker);
+    }
+
+    /**
+     * {@link #run(Supplier, RetryPolicy, Predicate, CircuitBreaker)}, waiting for {@code admission} (may be null,
+     * e.g. a rate-limiter permit) before each attempt. The breaker is only consulted once admitted, so a queued
+     * attempt never holds a half-open trial.
+     */
+    static <T> CompletableFuture<T> run(Supplier<CompletableFuture<Void>> admission,
+                                        Supplier<CompletableFuture<T>> attempt, RetryPolicy policy,
+                                        Predicate<Throwable> retryable, CircuitBreaker breaker) {
+        CompletableFuture<T> out = new CompletableFuture<>();
+        admit(admission, attempt, policy, retryable, breaker, 1, 0, out);
+        return out;
+    }
+
+    private static <T> void admit(Supplier<CompletableFuture<Void>> admission,
+                                  Supplier<CompletableFuture<T>> attempt, RetryPolicy policy,
+                                  Predicate<Throwable> retryable, CircuitBreaker breaker,
+                                  int n, long previousDelay, CompletableFuture<T> out) {
+        if (out.isDone()) return; // cancelled
+        if (admission == null) {
+            attempt(admission, attempt, policy, retryable, breaker, n, previousDelay, out);
+            return;
+        }
+        CompletableFuture<Void> admitted;
+        try {
+            admitted = admission.get();
+        } catch (RuntimeException e) {
+            admitted = CompletableFuture.failedFuture(e);
+        }
+        admitted.whenComplete((x, err) -> {
+            if (err != null) out.completeExceptionally(Kontext4J.unwrap(err));
+            else attempt(admission, attempt, policy, retryable, breaker, n, previousDelay, out);
+        });
+    }
+
+    private static <T> void attempt(Supplier<CompletableFuture<Void>> admission,
+                                    Supplier<CompletableFuture<T>> attempt, RetryPolicy policy,
+                                    Predicate<Throwable> retryable, CircuitBreaker breaker,
+                                    int n, long previousDelay, CompletableFuture<T> out) {
+        if (out.isDone()) return; // cancelled
+        long trial = breaker == null ? 0 : breaker.acquire();
+        if (trial < 0) {
+            out.completeExceptionally(breaker.openException());
+            return;
+        }
+        CompletableFuture<T> f;
+        try {
+            f = attempt.get();
+        } catch (RuntimeException e) {
+            f = CompletableFuture.failedFuture(e);
+        }
+        f.whenComplete((v, err) -> {
+            if (err == null) {
+                if (breaker != null) breaker.onSuccess();
+                out.complete(v);
+                return;
+            }
+            Throwable cause = Kontext4J.unwrap(err);
+            if (cause instanceof CancellationException) {
+                // says nothing about the endpoint, but a half-open trial must not stay taken forever
+                if (breaker != null) breaker.release(trial);
+                out.completeExceptionally(cause);
+                return;
+            }
+            if (breaker != null) {
+                if (isServerFailure(cause)) breaker.onFailure();
+                else breaker.onSuccess(); // the endpoint answered; client errors say nothing about its health
+            }
+            if (n >= policy.getMaxAttempts() || !retryable.test(cause)) {
+                out.completeExceptionally(cause);
+                return;
+            }
+            long backoff = policy.nextDelayMillis(previousDelay);
+            long delay = cause instanceof RateLimitedException
+                    ? Math.max(backoff, ((RateLimitedException) cause).getRetryAfterMillis())
+                    : backoff;
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                    .execute(() -> admit(admission, attempt, policy, retryable, breaker, n + 1, backoff, out));
+        });
+    }
+
+    /** Transport failure or 5xx: counts against the endpoint's health. */
+    static boolean isServerFailure(Throwable t) {
+        if (t instanceof KontextHttpException) return ((KontextHttpException) t).getStatusCode() >= 500;
+        return t instanceof IOException && !(t instanceof CircuitOpenException);
+    }
+
+    /** The request never reached the server, or the server said it did not process it. */
+    static boolean notProcessed(Throwable t) {
+        if (t instanceof KontextHttpException) {
+            int s = ((KontextHttpException) t).getStatusCode();
+            return s == 429 || s == 503;
+        }
+        return t instanceof ConnectException || t instanceof HttpConnectTimeoutException;
+    }
+
+    /** Task creation: safe when nothing was created, or when resending cannot create a different result. */
+    static Predicate<Throwable> forCreate(boolean idempotent) {
+        return t -> notProcessed(t) || (idempotent && isServerFailure(t));
+    }
+
+    /** Polling is a GET: retry every transport error, 429 and 5xx. */
+    static boolean forPoll(Throwable t) {
+        if (t instanceof KontextHttpException) {
+            int s = ((KontextHttpException) t).getStatusCode();
+            return s == 429 || s >= 500;
+        }
+        return t instanceof IOException && !(t instanceof CircuitOpenException);
+    }
+}
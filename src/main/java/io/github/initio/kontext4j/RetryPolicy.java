@@ -0,0 +1,56 @@
+package io.github.initio.kontext4j;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How often and how long to wait between attempts. Waits use decorrelated jitter:
+ * {@code next = min(maxDelay, random(baseDelay, previous * 3))}, which spreads retries of
+ * many clients apart instead of retrying in synchronized waves.
+ */
+public final class RetryPolicy {
+
+    private static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    private RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @param maxAttempts total attempts including the first (1 = no retries)
+     * @param baseDelayMillis shortest wait
+     * @param maxDelayMillis longest wait
+     */
+    public static RetryPolicy of(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be >= 1");
+        if (baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) throw new IllegalArgumentException("Need 0 <= baseDelay <= maxDelay");
+        return new RetryPolicy(maxAttempts, baseDelayMillis, maxDelayMillis);
+    }
+
+    /** Single attempt, no retries. */
+    public static RetryPolicy none() {
+        return NONE;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /** Wait before the next attempt, given the previous wait (0 before the first retry). */
+    long nextDelayMillis(long previousDelayMillis) {
+        long upper = Math.max(baseDelayMillis, previousDelayMillis * 3);
+        long d = upper <= baseDelayMillis ? baseDelayMillis
+                : ThreadLocalRandom.current().nextLong(baseDelayMillis, upper + 1);
+        return Math.min(maxDelayMillis, d);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy[attempts=" + maxAttempts + ", base=" + baseDelayMillis + "ms, max=" + maxDelayMillis + "ms]";
+    }
+}
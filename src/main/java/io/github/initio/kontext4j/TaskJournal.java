@@ -0,0 +1,423 @@
+package io.github.initio.kontext4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONString;
+
+/**
+ * Append-only journal of submitted tasks (one JSON object per line), so pending work survives a restart.
+ *
+ * - Records each task's endpoint, model, request hash and polling_url once the API accepted it, then status
+ *   changes and the final result or error
+ * - Writes are group-committed: a background thread appends and fsyncs every {@link #setSyncIntervalMillis}
+ *   (default 100 ms), so the hot path never waits on the disk
+ * - A failed write keeps its records buffered for the next flush; recording never throws into a task,
+ *   errors are counted in {@link #getWriteErrors()}
+ * - On open the file is replayed (a torn last line is ignored) and compacted to pending tasks plus the most
+ *   recent {@code maxCompleted} finished ones
+ *
+ * Attach with {@link Kontext4J#setTaskJournal}; after a restart {@link Kontext4J#resumePending()} picks the
+ * pending tasks back up. Finished entries keep the raw result, so identical requests can be found by
+ * {@link #findCompleted(String)} (mind that result URLs are signed and expire).
+ */
+public final class TaskJournal implements AutoCloseable {
+
+    /** Replayed state of one task. */
+    public static final class Entry {
+        private final JSONObject json;
+
+        Entry(JSONObject json) {
+            this.json = json;
+        }
+
+        public String getTaskId() {
+            return json.optString("id", null);
+        }
+
+        public String getEndpoint() {
+            return json.optString("endpoint", null);
+        }
+
+        public String getModel() {
+            return json.optString("model", null);
+        }
+
+        /** Content hash of the request (endpoint + body, images by content). */
+        public String getRequestHash() {
+            return json.optString("hash", null);
+        }
+
+        public String getPollingUrl() {
+            return json.optString("polling_url", null);
+        }
+
+        /** Last status seen: API status while pending, then "done" or "failed". */
+        public String getStatus() {
+            return json.optString("status", "");
+        }
+
+        /** Epoch millis when the API accepted the task. */
+        public long getCreatedAt() {
+            return json.optLong("created", 0);
+        }
+
+        /** Epoch millis of the last update. */
+        public long getUpdatedAt() {
+            return json.optLong("ts", 0);
+        }
+
+        public boolean isPending() {
+            return !"done".equals(getStatus()) && !"failed".equals(getStatus());
+        }
+
+        /** Raw final JSON of a finished task, or null. Parsed on each call. */
+        public JSONObject getResult() {
+            Object r = json.opt("result");
+            if (r instanceof RawJson) return new JSONObject(((RawJson) r).text);
+            return r instanceof JSONObject ? (JSONObject) r : null;
+        }
+
+        /** Error message of a failed task, or null. */
+        public String getError() {
+            return json.optString("error", null);
+        }
+
+        @Override
+        public String toString() {
+            return json.toString();
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int maxCompleted;
+    private final Map<String, JSONObject> entries = new LinkedHashMap<>();
+    private int finished;
+
+    private final Object lock = new Object();
+    private List<byte[]> buffer = new ArrayList<>();
+    private volatile long syncIntervalMillis = 100;
+    private volatile boolean closed;
+    private final Thread flusher;
+    private final LongAdder writeErrors = new LongAdder();
+    private volatile IOException lastError;
+
+    private TaskJournal(Path file, int maxCompleted) throws IOException {
+        this.file = file;
+        this.maxCompleted = maxCompleted;
+        replay();
+        compact();
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.flusher = new Thread(this::flushLoop, "kontext4j-journal");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /** Open (or create) a journal, keeping up to 10,000 finished entries. */
+    public static TaskJournal open(Path file) throws IOException {
+        return open(file, 10_000);
+    }
+
+    public static TaskJournal open(Path file, int maxCompleted) throws IOException {
+        if (maxCompleted < 0) throw new IllegalArgumentException("maxCompleted must be >= 0");
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        return new TaskJournal(file, maxCompleted);
+    }
+
+    /** Max delay between a record and its fsync. 0 syncs every record before returning. */
+    public TaskJournal setSyncIntervalMillis(long ms) {
+        if (ms < 0) throw new IllegalArgumentException("syncIntervalMillis must be >= 0");
+        this.syncIntervalMillis = ms;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        return this;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /** Failed write or fsync attempts so far; the records stay buffered and are retried. */
+    public long getWriteErrors() {
+        return writeErrors.sum();
+    }
+
+    /** Cause of the most recent failed write, or null. */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    /** Tasks accepted by the API that have not finished yet, oldest first. */
+    public List<Entry> getPending() {
+        List<Entry> out = new ArrayList<>();
+        synchronized (entries) {
+            for (JSONObject e : entries.values()) {
+                Entry entry = new Entry(new JSONObject(e.toMap()));
+                if (entry.isPending()) out.add(entry);
+            }
+        }
+        return out;
+    }
+
+    /** Every known task, oldest first. */
+    public List<Entry> getEntries() {
+        List<Entry> out = new ArrayList<>();
+        synchronized (entries) {
+            for (JSONObject e : entries.values()) out.add(new Entry(new JSONObject(e.toMap())));
+        }
+        return out;
+    }
+
+    /** Most recent successfully finished task with this request hash, or null. */
+    public Entry findCompleted(String requestHash) {
+        if (requestHash == null) return null;
+        synchronized (entries) {
+            Entry found = null;
+            for (JSONObject e : entries.values()) {
+                if (requestHash.equals(e.optString("hash", null)) && "done".equals(e.optString("status"))) {
+                    found = new Entry(new JSONObject(e.toMap()));
+                }
+            }
+            return found;
+        }
+    }
+
+    // ----------------------
+    // Recording (called by Kontext4J)
+    // ----------------------
+    void created(PollTask task, String requestHash) {
+        if (task.id == null) return; // nothing to resume without an id
+        JSONObject r = record("created", task.id)
+                .put("endpoint", task.endpoint)
+                .put("model", task.model)
+                .put("hash", requestHash)
+                .put("polling_url", task.pollingUrl)
+                .put("created", task.createdAt)
+                .put("status", "Pending");
+        append(r);
+    }
+
+    /** Journal a status only when it changes, not on every poll. */
+    void status(PollTask task, String status) {
+        if (task.id == null || status == null || status.isEmpty()) return;
+        synchronized (entries) {
+            JSONObject e = entries.get(task.id);
+            if (e == null || status.equals(e.optString("status"))) return;
+        }
+        append(record("status", task.id).put("status", status));
+    }
+
+    /** The result is journaled as the text the API sent, so finishing a task never parses it. */
+    void completed(PollTask task, KontextResult result) {
+        if (task.id == null) return;
+        String text = result.getRawText();
+        Object raw = text == null ? null
+                : text.indexOf('\n') < 0 && text.indexOf('\r') < 0 ? new RawJson(text)
+                : result.getRaw(); // pretty-printed: re-serialize so the record stays on one line
+        append(record("done", task.id).put("status", "done").put("result", raw));
+    }
+
+    void failed(PollTask task, Throwable error) {
+        if (task.id == null) return;
+        append(record("failed", task.id).put("status", "failed").put("error", String.valueOf(error.getMessage())));
+    }
+
+    /** A JSON object kept as text; written to the journal verbatim. */
+    private static final class RawJson implements JSONString {
+        final String text;
+
+        RawJson(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String toJSONString() {
+            return text;
+        }
+    }
+
+    private static JSONObject record(String type, String id) {
+        return new JSONObject().put("t", type).put("id", id).put("ts", System.currentTimeMillis());
+    }
+
+    private void append(JSONObject r) {
+        if (closed) return;
+        apply(r);
+        byte[] line = (r.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+        if (syncIntervalMillis == 0) {
+            synchronized (lock) {
+                buffer.add(line);
+            }
+            try {
+                flush();
+            } catch (UncheckedIOException e) {
+                // counted in flush(); the record stays buffered for the next one
+            }
+            return;
+        }
+        synchronized (lock) {
+            buffer.add(line);
+        }
+    }
+
+    /** Fold one record into the in-memory state. */
+    private void apply(JSONObject r) {
+        String id = r.optString("id", null);
+        if (id == null) return;
+        synchronized (entries) {
+            JSONObject e = entries.get(id);
+            if (e == null) {
+                e = new JSONObject();
+                entries.put(id, e);
+            }
+            boolean wasPending = new Entry(e).isPending();
+            for (String key : r.keySet()) {
+                if (!key.equals("t")) e.put(key, r.get(key));
+            }
+            if (wasPending && !new Entry(e).isPending()) {
+                finished++;
+                trim();
+            }
+        }
+    }
+
+    /** Drop the oldest finished entries beyond maxCompleted (caller holds the entries lock). */
+    private void trim() {
+        Iterator<JSONObject> it = entries.values().iterator();
+        while (finished > maxCompleted && it.hasNext()) {
+            if (!new Entry(it.next()).isPending()) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+
+    // ----------------------
+    // Persistence
+    // ----------------------
+
+    /**
+     * Write buffered records and fsync. On failure the batch goes back to the head of the buffer (and a partly
+     * written tail is cut off, if the disk lets us), so the next flush retries it in order.
+     */
+    public void flush() {
+        synchronized (channel) {
+            List<byte[]> batch;
+            synchronized (lock) {
+                if (buffer.isEmpty()) return;
+                batch = buffer;
+                buffer = new ArrayList<>();
+            }
+            int size = 0;
+            for (byte[] b : batch) size += b.length;
+            ByteBuffer bb = ByteBuffer.allocate(size);
+            for (byte[] b : batch) bb.put(b);
+            bb.flip();
+            long start = -1;
+            try {
+                start = channel.size();
+                while (bb.hasRemaining()) channel.write(bb);
+                channel.force(false);
+            } catch (IOException e) {
+                if (start >= 0) {
+                    try {
+                        channel.truncate(start); // no torn line for the retry to append to
+                    } catch (IOException ignored) {
+                        // replay skips a torn line; worst case one record is lost
+                    }
+                }
+                synchronized (lock) {
+                    batch.addAll(buffer);
+                    buffer = batch;
+                }
+                writeErrors.increment();
+                lastError = e;
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            try {
+                synchronized (lock) {
+                    long wait = syncIntervalMillis;
+                    lock.wait(wait == 0 ? 1000 : wait);
+                }
+                flush();
+            } catch (InterruptedException e) {
+                return;
+            } catch (UncheckedIOException | IllegalStateException e) {
+                // disk trouble: keep the records buffered and retry on the next tick
+            }
+        }
+    }
+
+    private void replay() throws IOException {
+        if (!Files.exists(file)) return;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    apply(new JSONObject(line));
+                } catch (JSONException torn) {
+                    // partial last write from a crash
+                }
+            }
+        }
+    }
+
+    /** Rewrite the file as one line per kept task (replay already dropped finished ones beyond maxCompleted). */
+    private void compact() throws IOException {
+        if (!Files.exists(file)) return;
+        Path tmp = file.resolveSibling(file.getFileName() + ".compact");
+        StringBuilder sb = new StringBuilder();
+        for (JSONObject e : entries.values()) sb.append(new JSONObject(e.toMap()).put("t", "entry")).append('\n');
+        Files.write(tmp, sb.toString().getBytes(StandardCharsets.UTF_8));
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        synchronized (lock) {
+            lock.notifyAll(); // no interrupt: it would close the channel mid-write
+        }
+        try {
+            flusher.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONObject;
+
+/**
+ * A creation, poll or webhook payload, read in one streaming pass over the raw bytes.
+ *
+ * Only what task handling needs is materialized: id, status, polling_url, whether an error or result is
+ * present, and the result URLs. Other values are skipped without allocating. The full {@link JSONObject}
+ * is built on first {@link #json()} (i.e. {@link KontextResult#getRaw()}), at most once.
+ *
+ * URLs are taken in the same order as before: result.sample, result.samples, result.outputs[].sample|url,
+ * top-level url; if none, any top-level string that looks like a URL.
+ */
+final class TaskResponse {
+
+    private static final byte[] K_ID = bytes("id");
+    private static final byte[] K_TASK_ID = bytes("task_id");
+    private static final byte[] K_STATUS = bytes("status");
+    private static final byte[] K_POLLING_URL = bytes("polling_url");
+    private static final byte[] K_ERROR = bytes("error");
+    private static final byte[] K_RESULT = bytes("result");
+    private static final byte[] K_URL = bytes("url");
+    private static final byte[] K_SAMPLE = bytes("sample");
+    private static final byte[] K_SAMPLES = bytes("samples");
+    private static final byte[] K_OUTPUTS = bytes("outputs");
+
+    private final byte[] body;
+    private volatile JSONObject json;
+
+    String id;
+    String taskId;
+    String status = "";
+    String pollingUrl;
+    boolean hasError;
+    boolean hasResult;
+    boolean hasUrl;
+    private List<String> urls = Collections.emptyList();
+
+    private TaskResponse(byte[] body) {
+        this.body = body;
+    }
+
+    /** Scan a JSON object; fails like the JSONObject path did on anything that isn't one. */
+    static TaskResponse parse(byte[] body) throws IOException {
+        TaskResponse r = new TaskResponse(body);
+        try {
+            new Scanner(body).top(r);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Invalid JSON from server: " + r.text(), e);
+        }
+        return r;
+    }
+
+    /** Result URLs (nulls and blanks removed). */
+    List<String> urls() {
+        return urls;
+    }
+
+    /** Id a webhook callback refers to: task_id, else id. */
+    String callbackTaskId() {
+        return taskId != null ? taskId : id;
+    }
+
+    /** The whole payload as an object, parsed on first use. */
+    JSONObject json() {
+        JSONObject j = json;
+        if (j == null) {
+            synchronized (this) {
+                j = json;
+                if (j == null) json = j = new JSONObject(text());
+            }
+        }
+        return j;
+    }
+
+    String text() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return text();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean looksLikeUrl(String s) {
+        if (s == null) return false;
+        String lower = s.toLowerCase();
+        return lower.startsWith("http://") || lower.startsWith("https://") || lower.startsWith("data:");
+    }
+
+    // ----------------------
+    // Scanner
+    // ----------------------
+
+    /** Minimal pull scanner over UTF-8 JSON. Keys are compared in place; values are decoded only when asked. */
+    private static final class Scanner {
+        private final byte[] b;
+        private int pos;
+        private int keyStart;
+        private int keyEnd;
+        private String escapedKey; // set instead of keyStart/keyEnd when the key has escapes
+
+        Scanner(byte[] b) {
+            this.b = b;
+        }
+
+        void top(TaskResponse r) {
+            List<String> sample = new ArrayList<>(1);
+            List<String> samples = new ArrayList<>();
+            List<String> outputs = new ArrayList<>();
+            String url = null;
+            List<String> fallback = null;
+
+            expect('{');
+            if (!endOf('}')) {
+                do {
+                    key();
+                    expect(':');
+                    ws();
+                    if (keyIs(K_RESULT) && peek() == '{') {
+                        r.hasResult = true;
+                        result(sample, samples, outputs);
+                        continue;
+                    }
+                    if (keyIs(K_ERROR)) r.hasError = true;
+                    if (peek() != '"') {
+                        // non-string values matter only for status/id (numbers) and as error/url presence
+                        if (keyIs(K_URL)) r.hasUrl = true;
+                        if (keyIs(K_STATUS)) r.status = nullToEmpty(literalOrSkip());
+                        else if (keyIs(K_ID)) r.id = literalOrSkip();
+                        else skipValue();
+                        continue;
+                    }
+                    String s = null;
+                    if (keyIs(K_STATUS)) r.status = s = string();
+                    else if (keyIs(K_ID)) r.id = s = string();
+                    else if (keyIs(K_TASK_ID)) r.taskId = s = string();
+                    else if (keyIs(K_POLLING_URL)) r.pollingUrl = s = string();
+                    else if (keyIs(K_URL)) {
+                        r.hasUrl = true;
+                        url = s = string();
+                    } else if (stringLooksLikeUrl()) s = string();
+                    else skipString();
+                    if (looksLikeUrl(s)) {
+                        if (fallback == null) fallback = new ArrayList<>(1);
+                        fallback.add(s);
+                    }
+                } while (next('}'));
+            }
+
+            List<String> urls = new ArrayList<>(sample.size() + samples.size() + outputs.size() + 1);
+            urls.addAll(sample);
+            urls.addAll(samples);
+            urls.addAll(outputs);
+            if (url != null) urls.add(url);
+            if (urls.isEmpty() && fallback != null) urls.addAll(fallback);
+            urls.removeIf(x -> x == null || x.isBlank());
+            r.urls = Collections.unmodifiableList(urls);
+        }
+
+        private void result(List<String> sample, List<String> samples, List<String> outputs) {
+            expect('{');
+            if (endOf('}')) return;
+            do {
+                key();
+                expect(':');
+                ws();
+                if (keyIs(K_SAMPLE)) {
+                    sample.clear();
+                    sample.add(stringOrLiteral());
+                } else if (keyIs(K_SAMPLES) && peek() == '[') {
+                    samples.clear();
+                    expect('[');
+                    if (!endOf(']')) {
+                        do {
+                            ws();
+                            if (peek() == '{' || peek() == '[') skipValue();
+                            else samples.add(stringOrLiteral());
+                        } while (next(']'));
+                    }
+                } else if (keyIs(K_OUTPUTS) && peek() == '[') {
+                    outputs.clear();
+                    expect('[');
+                    if (!endOf(']')) {
+                        do {
+                            ws();
+                            if (peek() == '{') output(outputs);
+                            else skipValue();
+                        } while (next(']'));
+                    }
+                } else {
+                    skipValue();
+                }
+            } while (next('}'));
+        }
+
+        /** One outputs[] entry: its sample, else its url. */
+        private void output(List<String> outputs) {
+            String sample = null;
+            String url = null;
+            boolean hasSample = false;
+            boolean hasUrl = false;
+            expect('{');
+            if (!endOf('}')) {
+                do {
+                    key();
+                    expect(':');
+                    ws();
+                    if (keyIs(K_SAMPLE)) {
+                        hasSample = true;
+                        sample = stringOrLiteral();
+                    } else if (keyIs(K_URL)) {
+                        hasUrl = true;
+                        url = stringOrLiteral();
+                    } else {
+                        skipValue();
+                    }
+                } while (next('}'));
+            }
+            if (hasSample) outputs.add(sample);
+            else if (hasUrl) outputs.add(url);
+        }
+
+        // ---- tokens ----
+
+        private void ws() {
+            while (pos < b.length) {
+                byte c = b[pos];
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+                pos++;
+            }
+        }
+
+        private byte peek() {
+            return b[pos];
+        }
+
+        private void expect(char c) {
+            ws();
+            if (b[pos] != c) throw new IllegalArgumentException("Expected '" + c + "' at " + pos);
+            pos++;
+        }
+
+        /** Consumes {@code close} if it comes next (empty object/array). */
+        private boolean endOf(char close) {
+            ws();
+            if (b[pos] != close) return false;
+            pos++;
+            return true;
+        }
+
+        /** After a member: true on ',', false on {@code close}. */
+        private boolean next(char close) {
+            ws();
+            byte c = b[pos++];
+            if (c == ',') return true;
+            if (c == close) return false;
+            throw new IllegalArgumentException("Expected ',' or '" + close + "' at " + (pos - 1));
+        }
+
+        private void key() {
+            ws();
+            if (b[pos] != '"') throw new IllegalArgumentException("Expected key at " + pos);
+            int start = pos + 1;
+            int end = start;
+            while (b[end] != '"') {
+                if (b[end] == '\\') {
+                    escapedKey = string();
+                    return;
+                }
+                end++;
+            }
+            escapedKey = null;
+            keyStart = start;
+            keyEnd = end;
+            pos = end + 1;
+        }
+
+        private boolean keyIs(byte[] k) {
+            if (escapedKey != null) return escapedKey.equals(new String(k, StandardCharsets.UTF_8));
+            int n = keyEnd - keyStart;
+            if (n != k.length) return false;
+            for (int i = 0; i < n; i++) {
+                if (b[keyStart + i] != k[i]) return false;
+            }
+            return true;
+        }
+
+        /** True if the string at pos starts with http://, https:// or data: (any case). */
+        private boolean stringLooksLikeUrl() {
+            return startsWithIgnoreCase("http://") || startsWithIgnoreCase("https://") || startsWithIgnoreCase("data:");
+        }
+
+        private boolean startsWithIgnoreCase(String prefix) {
+            int p = pos + 1;
+            if (p + prefix.length() > b.length) return false;
+            for (int i = 0; i < prefix.length(); i++) {
+                if (Character.toLowerCase((char) b[p + i]) != prefix.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        private String stringOrLiteral() {
+            return peek() == '"' ? string() : literalOrSkip();
+        }
+
+        /** A JSON string at pos, unescaped. */
+        private String string() {
+            int start = ++pos;
+            int i = start;
+            while (b[i] != '"') {
+                if (b[i] == '\\') return escapedString(start);
+                i++;
+            }
+            pos = i + 1;
+            return new String(b, start, i - start, StandardCharsets.UTF_8);
+        }
+
+        private String escapedString(int start) {
+            StringBuilder sb = new StringBuilder();
+            int i = start;
+            int run = start;
+            while (b[i] != '"') {
+                if (b[i] != '\\') {
+                    i++;
+                    continue;
+                }
+                sb.append(new String(b, run, i - run, StandardCharsets.UTF_8));
+                byte e = b[i + 1];
+                i += 2;
+                switch (e) {
+                    case '"': sb.append('"'); break;
+                    case '\\': sb.append('\\'); break;
+                    case '/': sb.append('/'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        sb.append((char) Integer.parseInt(new String(b, i, 4, StandardCharsets.US_ASCII), 16));
+                        i += 4;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Bad escape at " + (i - 1));
+                }
+                run = i;
+            }
+            sb.append(new String(b, run, i - run, StandardCharsets.UTF_8));
+            pos = i + 1;
+            return sb.toString();
+        }
+
+        private void skipString() {
+            int i = pos + 1;
+            while (b[i] != '"') i += b[i] == '\\' ? 2 : 1;
+            pos = i + 1;
+        }
+
+        /** Number/true/false as text, null for JSON null; objects and arrays are skipped (null). */
+        private String literalOrSkip() {
+            byte c = peek();
+            if (c == '{' || c == '[') {
+                skipValue();
+                return null;
+            }
+            int start = pos;
+            while (pos < b.length && !isDelimiter(b[pos])) pos++;
+            if (pos == start) throw new IllegalArgumentException("Expected value at " + start);
+            String lit = new String(b, start, pos - start, StandardCharsets.US_ASCII);
+            return lit.equals("null") ? null : lit;
+        }
+
+        private void skipValue() {
+            ws();
+            byte c = peek();
+            if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                int depth = 0;
+                do {
+                    byte x = b[pos];
+                    if (x == '"') {
+                        skipString();
+                        continue;
+                    }
+                    if (x == '{' || x == '[') depth++;
+                    else if (x == '}' || x == ']') depth--;
+                    pos++;
+                } while (depth > 0);
+            } else {
+                int start = pos;
+                while (pos < b.length && !isDelimiter(b[pos])) pos++;
+                if (pos == start) throw new IllegalArgumentException("Expected value at " + start);
+            }
+        }
+
+        private static boolean isDelimiter(byte c) {
+            return c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t';
+        }
+
+        private static String nullToEmpty(String s) {
+            return s == null ? "" : s;
+        }
+    }
+}
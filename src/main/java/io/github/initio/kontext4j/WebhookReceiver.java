@@ -0,0 +1,275 @@
+package io.github.initio.kontext4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP endpoint that receives BFL webhook callbacks and completes the matching pending task.
+ *
+ * With {@link Kontext4J#setWebhookReceiver(WebhookReceiver)}, every call that doesn't set its own
+ * webhookUrl gets {@code webhook_url = <publicBaseUrl>/kontext4j/webhook?ref=<token>} and this
+ * receiver's secret; polling then drops to a slow fallback interval.
+ *
+ * Callbacks are matched by the {@code ref} token (or the task id in the payload) and must carry an
+ * HMAC-SHA256 of the raw body, keyed with the secret, in the signature header (hex, "sha256=hex" or base64).
+ * Unsigned callbacks are always rejected, and bodies over {@link #setMaxBodyBytes} get 413 unread.
+ */
+public final class WebhookReceiver implements AutoCloseable {
+
+    public static final String PATH = "/kontext4j/webhook";
+    public static final String DEFAULT_SIGNATURE_HEADER = "X-Webhook-Signature";
+    public static final int DEFAULT_MAX_BODY_BYTES = 1024 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String callbackUrl;
+    private final String secret;
+    private volatile String signatureHeader = DEFAULT_SIGNATURE_HEADER;
+    private volatile int maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+
+    private final Map<String, PollTask> byRef = new ConcurrentHashMap<>();
+    private final Map<String, PollTask> byTaskId = new ConcurrentHashMap<>();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private WebhookReceiver(HttpServer server, String publicBaseUrl, String secret) {
+        this.server = server;
+        this.callbackUrl = stripSlash(publicBaseUrl) + PATH;
+        this.secret = secret;
+        server.createContext(PATH, this::handle);
+        // completing a task runs its callers' continuations (e.g. a batch submitting its next request),
+        // which must not hold up the intake of other callbacks
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "kontext4j-webhook");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Bind and start.
+     *
+     * @param bind local address (port 0 picks a free one)
+     * @param publicBaseUrl how the API reaches this host, e.g. "https://hooks.example.com"; null = http://host:port of
+     *                      the bind address, which must then be a specific one (not the wildcard address)
+     * @param secret webhook secret sent to the API and used to verify callbacks; null generates a random one
+     */
+    public static WebhookReceiver start(InetSocketAddress bind, String publicBaseUrl, String secret) throws IOException {
+        if (publicBaseUrl == null && bind.getAddress() != null && bind.getAddress().isAnyLocalAddress()) {
+            throw new IllegalArgumentException("publicBaseUrl is required when binding the wildcard address");
+        }
+        if (secret != null && secret.isEmpty()) throw new IllegalArgumentException("secret must not be empty");
+        if (secret == null) secret = randomSecret();
+        HttpServer server = HttpServer.create(bind, 0);
+        String base = publicBaseUrl != null ? publicBaseUrl
+                : "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+        return new WebhookReceiver(server, base, secret);
+    }
+
+    /** Bind to {@code port} on all interfaces; {@code publicBaseUrl} is required. */
+    public static WebhookReceiver start(int port, String publicBaseUrl, String secret) throws IOException {
+        return start(new InetSocketAddress(port), publicBaseUrl, secret);
+    }
+
+    /** Header carrying the signature; default {@value #DEFAULT_SIGNATURE_HEADER}. */
+    public WebhookReceiver setSignatureHeader(String name) {
+        this.signatureHeader = Objects.requireNonNull(name, "name");
+        return this;
+    }
+
+    /** Largest callback body accepted (default {@value #DEFAULT_MAX_BODY_BYTES}); larger ones get 413. */
+    public WebhookReceiver setMaxBodyBytes(int bytes) {
+        if (bytes < 1 || bytes > 1 << 30) throw new IllegalArgumentException("maxBodyBytes must be in [1, 1 GiB]");
+        this.maxBodyBytes = bytes;
+        return this;
+    }
+
+    public String getCallbackUrl() {
+        return callbackUrl;
+    }
+
+    /** The secret given to {@link #start}, or the generated one. */
+    public String getSecret() {
+        return secret;
+    }
+
+    /** Local port actually bound. */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getReceived() { return received.sum(); }
+    public long getCompleted() { return completed.sum(); }
+    public long getRejected() { return rejected.sum(); }
+    public int getPendingTasks() { return byRef.size(); }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    // ----------------------
+    // Task registry
+    // ----------------------
+
+    /** Register a task before it is created; returns the callback URL to send as webhook_url. */
+    String register(PollTask task) {
+        String ref = UUID.randomUUID().toString();
+        task.webhookRef = ref;
+        byRef.put(ref, task);
+        task.done.whenComplete((r, e) -> {
+            byRef.remove(ref);
+            String id = task.id;
+            if (id != null) byTaskId.remove(id, task);
+        });
+        return callbackUrl + "?ref=" + ref;
+    }
+
+    /** Called once the API assigned a task id, so callbacks without our ref can still be matched. */
+    void bindTaskId(PollTask task) {
+        if (task.id != null && !task.done.isDone()) byTaskId.put(task.id, task);
+    }
+
+    // ----------------------
+    // HTTP
+    // ----------------------
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            received.increment();
+            if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) {
+                respond(ex, 405);
+                return;
+            }
+            int max = maxBodyBytes;
+            if (contentLength(ex) > max) {
+                rejected.increment();
+                respond(ex, 413);
+                return;
+            }
+            byte[] body;
+            try (InputStream in = ex.getRequestBody()) {
+                body = in.readNBytes(max + 1); // chunked bodies carry no length
+            }
+            if (body.length > max) {
+                rejected.increment();
+                respond(ex, 413);
+                return;
+            }
+            if (!verify(body, ex.getRequestHeaders().getFirst(signatureHeader))) {
+                rejected.increment();
+                respond(ex, 401);
+                return;
+            }
+            TaskResponse json;
+            try {
+                json = TaskResponse.parse(body);
+            } catch (IOException e) {
+                rejected.increment();
+                respond(ex, 400);
+                return;
+            }
+            PollTask task = find(ex.getRequestURI(), json);
+            if (task == null) {
+                respond(ex, 404); // unknown, late or duplicate callback
+                return;
+            }
+            if (task.settle(json)) completed.increment();
+            respond(ex, 200);
+        }
+    }
+
+    private PollTask find(URI uri, TaskResponse json) {
+        String query = uri.getRawQuery();
+        if (query != null) {
+            for (String kv : query.split("&")) {
+                if (kv.startsWith("ref=")) {
+                    PollTask t = byRef.get(kv.substring(4));
+                    if (t != null) return t;
+                }
+            }
+        }
+        String id = json.callbackTaskId();
+        return id == null ? null : byTaskId.get(id);
+    }
+
+    /** Declared body length, or -1. */
+    private static long contentLength(HttpExchange ex) {
+        String v = ex.getRequestHeaders().getFirst("Content-Length");
+        if (v == null) return -1;
+        try {
+            return Long.parseLong(v.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private boolean verify(byte[] body, String signature) {
+        if (signature == null) return false;
+        String sig = signature.trim();
+        if (sig.regionMatches(true, 0, "sha256=", 0, 7)) sig = sig.substring(7);
+        byte[] expected;
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            expected = mac.doFinal(body);
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+        byte[] given = decodeSignature(sig);
+        return given != null && MessageDigest.isEqual(expected, given);
+    }
+
+    private static byte[] decodeSignature(String sig) {
+        if (sig.length() == 64 && sig.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            byte[] out = new byte[32];
+            for (int i = 0; i < 32; i++) out[i] = (byte) Integer.parseInt(sig.substring(2 * i, 2 * i + 2), 16);
+            return out;
+        }
+        try {
+            return Base64.getDecoder().decode(sig);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void respond(HttpExchange ex, int code) throws IOException {
+        ex.sendResponseHeaders(code, -1);
+    }
+
+    /** 256 random bits, hex. */
+    private static String randomSecret() {
+        byte[] b = new byte[32];
+        new SecureRandom().nextBytes(b);
+        return RequestBody.hex(b);
+    }
+
+    private static String stripSlash(String s) {
+        return s.endsWith("/") ? s.substring(0, s.length() - 1) : s;
+    }
+}